@@ -1,6 +1,7 @@
 package Model.DataAccessObjectImplementations;
 
 import Model.UtilitiesandServerEntryPoint.DatabaseManager;
+import Model.UtilitiesandServerEntryPoint.QueryMetrics;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
@@ -16,6 +17,15 @@ public abstract class BaseDAO {
             return DatabaseManager.getConnection();
         }
     }
+    // Reads without a caller transaction may be served by the read replica; inside a transaction they stay on its connection
+    protected Connection getReadConnection(Connection... existingConns) throws SQLException{
+        if(existingConns!=null && existingConns.length>0 &&existingConns[0]!=null){
+            return existingConns[0];
+        }
+        else{
+            return DatabaseManager.getReadConnection();
+        }
+    }
     protected void closeResources(ResultSet rs, Statement stmt, Connection conn, Connection... existingConns){
         if(existingConns!=null && existingConns.length>0 && existingConns[0]!=null){
             //If using an existing connection, only close rs and stmt, not the connection itself
@@ -40,4 +50,10 @@ public abstract class BaseDAO {
     protected void closeResources(Statement stmt,Connection conn,Connection... existingConns){
         closeResources(null,stmt,conn,existingConns);
     }
+    // Feeds the per-SQL JMX stats. startNanos stays 0 if no statement ran; rows < 0 marks a failed execution
+    protected void recordQuery(String sql,long startNanos,long rows){
+        if(startNanos!=0){
+            QueryMetrics.record(sql,System.nanoTime()-startNanos,rows);
+        }
+    }
 }
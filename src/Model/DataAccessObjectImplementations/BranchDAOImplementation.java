@@ -14,14 +14,18 @@ public class BranchDAOImplementation extends BaseDAO implements IBranchDAO {
         String sql="INSERT INTO branches (branch_id, name, location) VALUES (?, ?, ?)";
         Connection conn=null;
         PreparedStatement psmt=null;
+        long start=0;
+        int rows=-1;
         try{
             conn=getConnection(conns);
             psmt=conn.prepareStatement(sql);
             psmt.setString(1,branch.getId());
             psmt.setString(2,branch.getName());
             psmt.setString(3,branch.getLocation());
-            psmt.executeUpdate();
+            start=System.nanoTime();
+            rows=psmt.executeUpdate();
         }finally {
+            recordQuery(sql,start,rows);
             closeResources(psmt,conn,conns);
         }
     }
@@ -31,15 +35,21 @@ public class BranchDAOImplementation extends BaseDAO implements IBranchDAO {
         Connection conn=null;
         PreparedStatement psmt=null;
         ResultSet rs=null;
+        long start=0;
+        int rows=-1;
         try{
-            conn=getConnection(conns);
+            conn=getReadConnection(conns);
             psmt=conn.prepareStatement(sql);
             psmt.setString(1,branchId);
+            start=System.nanoTime();
             rs=psmt.executeQuery();
             if(rs.next()){
+                rows=1;
                 return Optional.of(new Branch(rs.getString("branch_id"), rs.getString("name"), rs.getString("location")));
             }
+            rows=0;
         }finally {
+            recordQuery(sql,start,rows);
             closeResources(rs,psmt,conn,conns);
         }
         return Optional.empty();
@@ -51,14 +61,19 @@ public class BranchDAOImplementation extends BaseDAO implements IBranchDAO {
         Connection conn=null;
         Statement stmt=null;
         ResultSet rs=null;
+        long start=0;
+        int rows=-1;
         try{
-            conn=getConnection(conns);
+            conn=getReadConnection(conns);
             stmt=conn.createStatement();
+            start=System.nanoTime();
             rs= stmt.executeQuery(sql);
             while(rs.next()){
                 branches.add(new Branch(rs.getString("branch_id"), rs.getString("name"), rs.getString("location")));
             }
+            rows=branches.size();
         }finally {
+            recordQuery(sql,start,rows);
             closeResources(rs,stmt,conn,conns);
         }
         return branches;
@@ -18,6 +18,8 @@ public class DrinkDAOImplementation extends BaseDAO implements IDrinkDAO {
     public void add(Drink drink, Connection... conns) throws SQLException {
         Connection conn = null;
         PreparedStatement pstmt = null;
+        long start = 0;
+        int rows = -1;
         try {
             conn = getConnection(conns);
             pstmt = conn.prepareStatement(INSERT_SQL);
@@ -25,8 +27,10 @@ public class DrinkDAOImplementation extends BaseDAO implements IDrinkDAO {
             pstmt.setString(2, drink.getName());
             pstmt.setString(3, drink.getBrand());
             pstmt.setDouble(4, drink.getPrice());
-            pstmt.executeUpdate();
+            start = System.nanoTime();
+            rows = pstmt.executeUpdate();
         } finally {
+            recordQuery(INSERT_SQL, start, rows);
             closeResources(pstmt, conn, conns);
         }
     }
@@ -36,12 +40,16 @@ public class DrinkDAOImplementation extends BaseDAO implements IDrinkDAO {
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
+        long start = 0;
+        int rows = -1;
         try {
-            conn = getConnection(conns);
+            conn = getReadConnection(conns);
             pstmt = conn.prepareStatement(FIND_BY_ID_SQL);
             pstmt.setString(1, drinkId);
+            start = System.nanoTime();
             rs = pstmt.executeQuery();
             if (rs.next()) {
+                rows = 1;
                 return Optional.of(new Drink(
                         rs.getString("drink_id"),
                         rs.getString("name"),
@@ -49,7 +57,9 @@ public class DrinkDAOImplementation extends BaseDAO implements IDrinkDAO {
                         rs.getDouble("price")
                 ));
             }
+            rows = 0;
         } finally {
+            recordQuery(FIND_BY_ID_SQL, start, rows);
             closeResources(rs, pstmt, conn, conns);
         }
         return Optional.empty();
@@ -61,9 +71,12 @@ public class DrinkDAOImplementation extends BaseDAO implements IDrinkDAO {
         Connection conn = null;
         Statement stmt = null;
         ResultSet rs = null;
+        long start = 0;
+        int rows = -1;
         try {
-            conn = getConnection(conns);
+            conn = getReadConnection(conns);
             stmt = conn.createStatement();
+            start = System.nanoTime();
             rs = stmt.executeQuery(FIND_ALL_SQL);
             while (rs.next()) {
                 drinks.add(new Drink(
@@ -73,7 +86,9 @@ public class DrinkDAOImplementation extends BaseDAO implements IDrinkDAO {
                         rs.getDouble("price")
                 ));
             }
+            rows = drinks.size();
         } finally {
+            recordQuery(FIND_ALL_SQL, start, rows);
             closeResources(rs, stmt, conn, conns);
         }
         return drinks;
@@ -83,6 +98,8 @@ public class DrinkDAOImplementation extends BaseDAO implements IDrinkDAO {
     public void update(Drink drink, Connection... conns) throws SQLException {
         Connection conn = null;
         PreparedStatement pstmt = null;
+        long start = 0;
+        int rows = -1;
         try {
             conn = getConnection(conns);
             pstmt = conn.prepareStatement(UPDATE_SQL);
@@ -90,8 +107,10 @@ public class DrinkDAOImplementation extends BaseDAO implements IDrinkDAO {
             pstmt.setString(2, drink.getBrand());
             pstmt.setDouble(3, drink.getPrice());
             pstmt.setString(4, drink.getId()); // The WHERE clause parameter
-            pstmt.executeUpdate();
+            start = System.nanoTime();
+            rows = pstmt.executeUpdate();
         } finally {
+            recordQuery(UPDATE_SQL, start, rows);
             closeResources(pstmt, conn, conns);
         }
     }
@@ -0,0 +1,32 @@
+package Model.DataAccessObjectImplementations;
+
+import Model.DataAccessObjectInterfaces.IBranchDAO;
+import Model.DataEntities.Branch;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+
+public class InMemoryBranchDAOImplementation implements IBranchDAO {
+    private final InMemoryDatabase db;
+
+    public InMemoryBranchDAOImplementation(InMemoryDatabase db) {
+        this.db = db;
+    }
+
+    @Override
+    public void add(Branch branch, Connection... conns) throws SQLException {
+        db.branches.insert(branch.getId(), branch, InMemoryTransaction.of(conns));
+    }
+
+    @Override
+    public Optional<Branch> findById(String branchId, Connection... conns) throws SQLException {
+        return Optional.ofNullable(db.branches.get(branchId, InMemoryTransaction.of(conns)));
+    }
+
+    @Override
+    public List<Branch> findAll(Connection... conns) throws SQLException {
+        return db.branches.scan(b -> true, InMemoryTransaction.of(conns));
+    }
+}
@@ -0,0 +1,52 @@
+package Model.DataAccessObjectImplementations;
+
+import Model.DataEntities.Branch;
+import Model.DataEntities.Drink;
+import Model.DataEntities.Order;
+import Model.DataEntities.OrderItem;
+import Model.DataEntities.StockItem;
+import Model.DataEntities.User;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Shared state of the in-memory backend (db.backend=memory). Lets the service layer be load-tested without MySQL.
+public class InMemoryDatabase {
+    private static final long LOCK_WAIT_TIMEOUT_MS = Long.getLong("db.memory.lockWaitTimeoutMs", 5_000L);
+
+    final InMemoryTable<String, Drink> drinks = new InMemoryTable<>(
+            d -> new Drink(d.getId(), d.getName(), d.getBrand(), d.getPrice()), LOCK_WAIT_TIMEOUT_MS);
+    final InMemoryTable<String, Branch> branches = new InMemoryTable<>(b -> b, LOCK_WAIT_TIMEOUT_MS); // Immutable
+    final InMemoryTable<String, User> users = new InMemoryTable<>(u -> u, LOCK_WAIT_TIMEOUT_MS);      // Immutable
+    final InMemoryTable<List<String>, StockItem> stockItems = new InMemoryTable<>(
+            s -> new StockItem(s.getBranchId(), s.getDrinkId(), s.getQuantity(), s.getMinimumThreshold()), LOCK_WAIT_TIMEOUT_MS);
+    final InMemoryTable<String, Order> orders = new InMemoryTable<>(InMemoryDatabase::copyHeader, LOCK_WAIT_TIMEOUT_MS);
+    final InMemoryTable<String, String> orderIdempotencyKeys = new InMemoryTable<>(k -> k, LOCK_WAIT_TIMEOUT_MS); // Unique index: key -> order ID
+    final InMemoryTable<String, List<OrderItem>> orderItems = new InMemoryTable<>(InMemoryDatabase::copyItems, LOCK_WAIT_TIMEOUT_MS); // Keyed by order ID
+    final AtomicInteger orderItemIds = new AtomicInteger(); // AUTO_INCREMENT for order_items
+
+    // Hand this to DatabaseManager so the services' getConnection()/commit()/rollback() drive in-memory transactions
+    public Connection newConnection() {
+        return new InMemoryTransaction().connection();
+    }
+
+    static List<String> stockKey(String branchId, String drinkId) {
+        return List.of(branchId, drinkId);
+    }
+
+    private static Order copyHeader(Order o) {
+        Order copy = new Order(o.getOrderId(), o.getCustomerId(), o.getBranchId(), o.getOrderTimestamp(), new ArrayList<>(), o.getTotalAmount());
+        copy.setIdempotencyKey(o.getIdempotencyKey());
+        return copy;
+    }
+
+    private static List<OrderItem> copyItems(List<OrderItem> items) {
+        List<OrderItem> copy = new ArrayList<>(items.size());
+        for (OrderItem i : items) {
+            copy.add(new OrderItem(i.getOrderItemId(), i.getOrderIdFk(), i.getDrinkId(), i.getDrinkName(), i.getQuantity(), i.getPriceAtTimeOfOrder(), i.getItemTotal()));
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,38 @@
+package Model.DataAccessObjectImplementations;
+
+import Model.DataAccessObjectInterfaces.IDrinkDAO;
+import Model.DataEntities.Drink;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+
+public class InMemoryDrinkDAOImplementation implements IDrinkDAO {
+    private final InMemoryDatabase db;
+
+    public InMemoryDrinkDAOImplementation(InMemoryDatabase db) {
+        this.db = db;
+    }
+
+    @Override
+    public void add(Drink drink, Connection... conns) throws SQLException {
+        db.drinks.insert(drink.getId(), drink, InMemoryTransaction.of(conns));
+    }
+
+    @Override
+    public Optional<Drink> findById(String drinkId, Connection... conns) throws SQLException {
+        return Optional.ofNullable(db.drinks.get(drinkId, InMemoryTransaction.of(conns)));
+    }
+
+    @Override
+    public List<Drink> findAll(Connection... conns) throws SQLException {
+        return db.drinks.scan(d -> true, InMemoryTransaction.of(conns));
+    }
+
+    @Override
+    public void update(Drink drink, Connection... conns) throws SQLException {
+        // Like UPDATE ... WHERE drink_id = ?: a missing row is left missing
+        db.drinks.write(drink.getId(), InMemoryTransaction.of(conns), current -> current == null ? null : drink);
+    }
+}
@@ -0,0 +1,164 @@
+package Model.DataAccessObjectImplementations;
+
+import Model.DataAccessObjectInterfaces.IOrderDAO;
+import Model.DataAccessObjectInterfaces.OrderFilter;
+import Model.DataAccessObjectInterfaces.RowCallback;
+import Model.DataEntities.Drink;
+import Model.DataEntities.Order;
+import Model.DataEntities.OrderItem;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public class InMemoryOrderDAOImplementation implements IOrderDAO {
+    private final InMemoryDatabase db;
+
+    public InMemoryOrderDAOImplementation(InMemoryDatabase db) {
+        this.db = db;
+    }
+
+    @Override
+    public void saveOrderHeader(Order order, Connection conn) throws SQLException {
+        InMemoryTransaction tx = InMemoryTransaction.of(conn);
+        db.orders.insert(order.getOrderId(), order, tx);
+        if (order.getIdempotencyKey() != null) {
+            db.orderIdempotencyKeys.insert(order.getIdempotencyKey(), order.getOrderId(), tx, IDEMPOTENCY_KEY_INDEX);
+        }
+    }
+
+    @Override
+    public void saveOrderHeaders(List<Order> orders, Connection conn) throws SQLException {
+        InMemoryTransaction tx = InMemoryTransaction.of(conn);
+        for (Order order : orders) {
+            db.orders.insert(order.getOrderId(), order, tx);
+            if (order.getIdempotencyKey() != null) {
+                db.orderIdempotencyKeys.insert(order.getIdempotencyKey(), order.getOrderId(), tx, IDEMPOTENCY_KEY_INDEX);
+            }
+        }
+    }
+
+    @Override
+    public void saveOrderItems(List<OrderItem> items, Connection conn) throws SQLException {
+        Map<String, List<OrderItem>> byOrder = new LinkedHashMap<>();
+        for (OrderItem item : items) {
+            OrderItem stored = new OrderItem(db.orderItemIds.incrementAndGet(), item.getOrderIdFk(), item.getDrinkId(), null,
+                    item.getQuantity(), item.getPriceAtTimeOfOrder(), item.getItemTotal());
+            byOrder.computeIfAbsent(item.getOrderIdFk(), k -> new ArrayList<>()).add(stored);
+        }
+        InMemoryTransaction tx = InMemoryTransaction.of(conn);
+        for (Map.Entry<String, List<OrderItem>> entry : byOrder.entrySet()) {
+            if (db.orders.get(entry.getKey(), tx) == null) { // Foreign key to orders
+                throw new SQLException("Cannot add order items: order " + entry.getKey() + " does not exist", "23000", 1452);
+            }
+            db.orderItems.write(entry.getKey(), tx, current -> {
+                List<OrderItem> merged = current == null ? new ArrayList<>() : current;
+                merged.addAll(entry.getValue());
+                return merged;
+            });
+        }
+    }
+
+    @Override
+    public Optional<Order> findbyId(String orderId, Connection... conn) throws SQLException {
+        return Optional.ofNullable(db.orders.get(orderId, InMemoryTransaction.of(conn)));
+    }
+
+    @Override
+    public Optional<Order> findByIdempotencyKey(String idempotencyKey, Connection... conn) throws SQLException {
+        InMemoryTransaction tx = InMemoryTransaction.of(conn);
+        String orderId = db.orderIdempotencyKeys.get(idempotencyKey, tx);
+        return orderId == null ? Optional.empty() : Optional.ofNullable(db.orders.get(orderId, tx));
+    }
+
+    @Override
+    public List<Order> findByBranchId(String branchId, Connection... conn) throws SQLException {
+        return db.orders.scan(o -> o.getBranchId().equals(branchId), InMemoryTransaction.of(conn));
+    }
+
+    @Override
+    public List<Order> findByCustomerId(String customerId, Connection... conn) throws SQLException {
+        return db.orders.scan(o -> o.getCustomerId().equals(customerId), InMemoryTransaction.of(conn));
+    }
+
+    @Override
+    public List<Order> findAll(Connection... conn) throws SQLException {
+        return db.orders.scan(o -> true, InMemoryTransaction.of(conn));
+    }
+
+    @Override
+    public List<OrderItem> findItemsByOrderId(String orderId, Connection... conn) throws SQLException {
+        List<OrderItem> items = db.orderItems.get(orderId, InMemoryTransaction.of(conn));
+        return items == null ? new ArrayList<>() : items;
+    }
+
+    @Override
+    public List<OrderItem> findItemsByOrderIds(Collection<String> orderIds, Connection... conn) throws SQLException {
+        List<OrderItem> items = new ArrayList<>();
+        for (String orderId : orderIds) {
+            items.addAll(findItemsByOrderId(orderId, conn));
+        }
+        return items;
+    }
+
+    @Override
+    public List<Order> findByBranchIdWithItems(String branchId, Connection... conn) throws SQLException {
+        return withItems(findByBranchId(branchId, conn), conn);
+    }
+
+    @Override
+    public List<Order> findByCustomerIdWithItems(String customerId, Connection... conn) throws SQLException {
+        return withItems(findByCustomerId(customerId, conn), conn);
+    }
+
+    @Override
+    public List<Order> findPageWithItems(OrderFilter filter, LocalDateTime afterTimestamp, String afterOrderId, int limit, Connection... conn) throws SQLException {
+        List<Order> matching = db.orders.scan(o -> matches(filter, o) && (afterTimestamp == null
+                || o.getOrderTimestamp().isAfter(afterTimestamp)
+                || (o.getOrderTimestamp().isEqual(afterTimestamp) && o.getOrderId().compareTo(afterOrderId) > 0)), InMemoryTransaction.of(conn));
+        matching.sort(Comparator.comparing(Order::getOrderTimestamp).thenComparing(Order::getOrderId));
+        return withItems(new ArrayList<>(matching.subList(0, Math.min(limit, matching.size()))), conn);
+    }
+
+    // Same shape as the JDBC join: oldest first, drink names filled in, "Unknown" for a drink that no longer exists
+    private List<Order> withItems(List<Order> orders, Connection... conn) throws SQLException {
+        InMemoryTransaction tx = InMemoryTransaction.of(conn);
+        orders.sort(Comparator.comparing(Order::getOrderTimestamp).thenComparing(Order::getOrderId));
+        for (Order order : orders) {
+            List<OrderItem> items = findItemsByOrderId(order.getOrderId(), conn);
+            for (OrderItem item : items) {
+                Drink drink = db.drinks.get(item.getDrinkId(), tx);
+                item.setDrinkName(drink != null ? drink.getName() : "Unknown");
+            }
+            order.setItems(items);
+        }
+        return orders;
+    }
+
+    @Override
+    public void forEachOrder(OrderFilter filter, RowCallback<Order> callback, Connection... conn) throws SQLException {
+        for (Order order : db.orders.scan(o -> matches(filter, o), InMemoryTransaction.of(conn))) {
+            callback.accept(order);
+        }
+    }
+
+    @Override
+    public Stream<Order> streamOrders(OrderFilter filter, Connection... conn) throws SQLException {
+        return db.orders.scan(o -> matches(filter, o), InMemoryTransaction.of(conn)).stream();
+    }
+
+    private static boolean matches(OrderFilter filter, Order o) {
+        return (filter.getBranchId() == null || filter.getBranchId().equals(o.getBranchId()))
+                && (filter.getCustomerId() == null || filter.getCustomerId().equals(o.getCustomerId()))
+                && (filter.getFrom() == null || !o.getOrderTimestamp().isBefore(filter.getFrom()))
+                && (filter.getTo() == null || o.getOrderTimestamp().isBefore(filter.getTo()));
+    }
+}
@@ -0,0 +1,132 @@
+package Model.DataAccessObjectImplementations;
+
+import Model.DataAccessObjectInterfaces.IStockItemDAO;
+import Model.DataEntities.Branch;
+import Model.DataEntities.Drink;
+import Model.DataEntities.LowStockEntry;
+import Model.DataEntities.StockItem;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+public class InMemoryStockItemDAOImplementation implements IStockItemDAO {
+    private final InMemoryDatabase db;
+
+    public InMemoryStockItemDAOImplementation(InMemoryDatabase db) {
+        this.db = db;
+    }
+
+    @Override
+    public void saveOrUpdate(StockItem stockItem, Connection... conns) throws SQLException {
+        db.stockItems.write(InMemoryDatabase.stockKey(stockItem.getBranchId(), stockItem.getDrinkId()),
+                InMemoryTransaction.of(conns), current -> stockItem);
+    }
+
+    @Override
+    public Optional<StockItem> findByBranchAndDrink(String branchId, String drinkId, Connection... conns) throws SQLException {
+        return Optional.ofNullable(db.stockItems.get(InMemoryDatabase.stockKey(branchId, drinkId), InMemoryTransaction.of(conns)));
+    }
+
+    @Override
+    public List<StockItem> findByBranch(String branchId, Connection... conns) throws SQLException {
+        return db.stockItems.scan(s -> s.getBranchId().equals(branchId), InMemoryTransaction.of(conns));
+    }
+
+    @Override
+    public List<StockItem> findAll(Connection... conns) throws SQLException {
+        return db.stockItems.scan(s -> true, InMemoryTransaction.of(conns));
+    }
+
+    @Override
+    public List<StockItem> findAllLowStock(Connection... conns) throws SQLException {
+        return db.stockItems.scan(s -> s.getQuantity() < s.getMinimumThreshold() && s.getMinimumThreshold() > 0, InMemoryTransaction.of(conns));
+    }
+
+    // The same inner join as the SQL: rows whose branch or drink is gone are left out
+    @Override
+    public List<LowStockEntry> findLowStock(String branchId, Connection... conns) throws SQLException {
+        InMemoryTransaction tx = InMemoryTransaction.of(conns);
+        List<StockItem> low = db.stockItems.scan(s -> s.getQuantity() < s.getMinimumThreshold() && s.getMinimumThreshold() > 0
+                && (branchId == null || s.getBranchId().equals(branchId)), tx);
+        low.sort(Comparator.comparing(StockItem::getBranchId).thenComparing(StockItem::getDrinkId));
+        List<LowStockEntry> entries = new ArrayList<>();
+        for (StockItem item : low) {
+            Branch branch = db.branches.get(item.getBranchId(), tx);
+            Drink drink = db.drinks.get(item.getDrinkId(), tx);
+            if (branch != null && drink != null) {
+                entries.add(new LowStockEntry(branch.getId(), branch.getName(), drink.getId(), drink.getName(), item.getQuantity(), item.getMinimumThreshold()));
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public void updateStockQuantity(String branchId, String drinkId, int newQuantity, Connection... conns) throws SQLException {
+        StockItem previous = db.stockItems.write(InMemoryDatabase.stockKey(branchId, drinkId), InMemoryTransaction.of(conns), current -> {
+            if (current != null) {
+                current.setQuantity(newQuantity);
+            }
+            return current;
+        });
+        if (previous == null) {
+            throw new SQLException("Stock item not found for update or quantity unchanged: " + branchId + "/" + drinkId);
+        }
+    }
+
+    @Override
+    public boolean decrementStock(String branchId, String drinkId, int quantity, Connection... conns) throws SQLException {
+        boolean[] decremented = new boolean[1];
+        db.stockItems.write(InMemoryDatabase.stockKey(branchId, drinkId), InMemoryTransaction.of(conns), current -> {
+            if (current != null && current.getQuantity() >= quantity) {
+                current.setQuantity(current.getQuantity() - quantity);
+                decremented[0] = true;
+            }
+            return current;
+        });
+        return decremented[0];
+    }
+
+    @Override
+    public List<String> decrementStock(String branchId, Map<String, Integer> quantitiesByDrink, Connection... conns) throws SQLException {
+        List<String> shortDrinks = new ArrayList<>();
+        for (Map.Entry<String, Integer> line : new TreeMap<>(quantitiesByDrink).entrySet()) { // Same lock order as the JDBC batch
+            if (!decrementStock(branchId, line.getKey(), line.getValue(), conns)) {
+                shortDrinks.add(line.getKey());
+            }
+        }
+        return shortDrinks;
+    }
+
+    @Override
+    public List<StockItem> findForUpdate(String branchId, Collection<String> drinkIds, Connection conn) throws SQLException {
+        InMemoryTransaction tx = InMemoryTransaction.of(conn);
+        List<StockItem> items = new ArrayList<>();
+        for (String drinkId : new TreeSet<>(drinkIds)) {
+            StockItem item = db.stockItems.lock(InMemoryDatabase.stockKey(branchId, drinkId), tx);
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    @Override
+    public boolean addStock(String branchId, String drinkId, int quantity, Connection... conns) throws SQLException {
+        StockItem previous = db.stockItems.write(InMemoryDatabase.stockKey(branchId, drinkId), InMemoryTransaction.of(conns), current -> {
+            if (current == null) {
+                return new StockItem(branchId, drinkId, quantity, 0);
+            }
+            current.setQuantity(current.getQuantity() + quantity);
+            return current;
+        });
+        return previous == null;
+    }
+}
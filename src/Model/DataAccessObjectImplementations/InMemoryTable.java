@@ -0,0 +1,134 @@
+package Model.DataAccessObjectImplementations;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+// One table of the in-memory backend. Each row keeps its committed value plus the uncommitted value of the
+// transaction holding its lock, so readers never see someone else's uncommitted writes (like InnoDB's plain SELECT).
+// Values are copied on the way in and out because the entities are mutable.
+class InMemoryTable<K, V> {
+
+    @FunctionalInterface
+    interface RowChange<V> {
+        V apply(V current) throws SQLException; // current is null when the row does not exist; return null to delete
+    }
+
+    private final ConcurrentHashMap<K, Row<V>> rows = new ConcurrentHashMap<>();
+    private final UnaryOperator<V> copier;
+    private final long lockWaitTimeoutMillis;
+
+    InMemoryTable(UnaryOperator<V> copier, long lockWaitTimeoutMillis) {
+        this.copier = copier;
+        this.lockWaitTimeoutMillis = lockWaitTimeoutMillis;
+    }
+
+    V get(K key, InMemoryTransaction tx) {
+        Row<V> row = rows.get(key);
+        return row == null ? null : copy(row.visibleTo(tx));
+    }
+
+    List<V> scan(Predicate<? super V> filter, InMemoryTransaction tx) {
+        List<V> result = new ArrayList<>();
+        for (Row<V> row : rows.values()) {
+            V value = row.visibleTo(tx);
+            if (value != null && filter.test(value)) {
+                result.add(copy(value));
+            }
+        }
+        return result;
+    }
+
+    void insert(K key, V value, InMemoryTransaction tx) throws SQLException {
+        insert(key, value, tx, "PRIMARY");
+    }
+
+    // For tables that stand in for a unique secondary index; the name shows up in the duplicate-key error like MySQL's
+    void insert(K key, V value, InMemoryTransaction tx, String indexName) throws SQLException {
+        write(key, tx, current -> {
+            if (current != null) {
+                throw new SQLIntegrityConstraintViolationException("Duplicate entry '" + key + "' for key '" + indexName + "'", "23000", 1062);
+            }
+            return value;
+        });
+    }
+
+    // Returns the value the row had before the change (null if it did not exist)
+    V write(K key, InMemoryTransaction tx, RowChange<V> change) throws SQLException {
+        InMemoryTransaction owner = tx != null ? tx : new InMemoryTransaction(); // Auto-commit: a one-statement transaction
+        Row<V> row = rows.computeIfAbsent(key, k -> new Row<>());
+        boolean ok = false;
+        try {
+            row.lock(owner, lockWaitTimeoutMillis);
+            V current = row.pending;
+            V next = change.apply(copy(current));
+            row.pending = copy(next);
+            ok = true;
+            return copy(current);
+        } finally {
+            if (tx == null) {
+                owner.finish(ok);
+            }
+        }
+    }
+
+    // Takes the row lock without changing anything, like SELECT ... FOR UPDATE
+    V lock(K key, InMemoryTransaction tx) throws SQLException {
+        if (tx == null) {
+            return get(key, null);
+        }
+        Row<V> row = rows.computeIfAbsent(key, k -> new Row<>());
+        row.lock(tx, lockWaitTimeoutMillis);
+        return copy(row.pending);
+    }
+
+    private V copy(V value) {
+        return value == null ? null : copier.apply(value);
+    }
+
+    static final class Row<V> {
+        private volatile V committed;
+        private V pending;                  // Guarded by this; only meaningful while owner != null
+        private InMemoryTransaction owner;  // Guarded by this
+
+        synchronized V visibleTo(InMemoryTransaction tx) {
+            return tx != null && owner == tx ? pending : committed;
+        }
+
+        synchronized void lock(InMemoryTransaction tx, long timeoutMillis) throws SQLException {
+            if (owner == tx) {
+                return;
+            }
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            while (owner != null) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new SQLTransientException("Lock wait timeout exceeded; try restarting transaction", "HY000", 1205);
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a row lock", e);
+                }
+            }
+            owner = tx;
+            pending = committed;
+            tx.enlist(this);
+        }
+
+        synchronized void release(boolean commit) {
+            if (commit) {
+                committed = pending;
+            }
+            pending = null;
+            owner = null;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package Model.DataAccessObjectImplementations;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+
+// The in-memory backend's stand-in for a JDBC connection. Services keep calling setAutoCommit/commit/rollback/close
+// on what they think is a Connection; the in-memory DAOs unwrap it to find the row locks the transaction holds.
+public class InMemoryTransaction implements InvocationHandler {
+    private final List<InMemoryTable.Row<?>> lockedRows = new ArrayList<>();
+    private boolean autoCommit = true;
+    private boolean closed;
+
+    // The transaction behind a DAO's optional connection argument, or null for auto-commit behaviour
+    static InMemoryTransaction of(Connection... conns) throws SQLException {
+        if (conns == null || conns.length == 0 || conns[0] == null) {
+            return null;
+        }
+        InMemoryTransaction tx = conns[0].unwrap(InMemoryTransaction.class);
+        if (tx.closed) {
+            throw new SQLException("Connection is closed");
+        }
+        return tx.autoCommit ? null : tx;
+    }
+
+    Connection connection() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+    }
+
+    void enlist(InMemoryTable.Row<?> row) {
+        lockedRows.add(row);
+    }
+
+    void finish(boolean commit) {
+        for (InMemoryTable.Row<?> row : lockedRows) {
+            row.release(commit);
+        }
+        lockedRows.clear();
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "InMemoryConnection" + (closed ? "(closed)" : "");
+            case "isClosed":
+                return closed;
+            case "isValid":
+                return !closed;
+            case "unwrap":
+                if (((Class<?>) args[0]).isInstance(this)) {
+                    return this;
+                }
+                throw new SQLException("Not a wrapper for " + args[0]);
+            case "isWrapperFor":
+                return ((Class<?>) args[0]).isInstance(this);
+            case "close":
+                if (!closed) {
+                    finish(false); // Like MySQL, closing with an open transaction rolls it back
+                    closed = true;
+                }
+                return null;
+            default:
+                break;
+        }
+        if (closed) {
+            throw new SQLException("Connection is closed");
+        }
+        switch (method.getName()) {
+            case "getAutoCommit":
+                return autoCommit;
+            case "setAutoCommit":
+                boolean enable = (Boolean) args[0];
+                if (enable && !autoCommit) {
+                    finish(true); // JDBC: switching auto-commit back on commits the open transaction
+                }
+                autoCommit = enable;
+                return null;
+            case "commit":
+                finish(true);
+                return null;
+            case "rollback":
+                if (args != null && args.length > 0) {
+                    throw new SQLFeatureNotSupportedException("Savepoints are not supported by the in-memory backend");
+                }
+                finish(false);
+                return null;
+            case "clearWarnings":
+                return null;
+            case "getWarnings":
+                return null;
+            default:
+                throw new SQLFeatureNotSupportedException("The in-memory backend does not support Connection." + method.getName());
+        }
+    }
+}
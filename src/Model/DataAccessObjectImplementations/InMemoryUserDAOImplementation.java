@@ -0,0 +1,42 @@
+package Model.DataAccessObjectImplementations;
+
+import Model.DataAccessObjectInterfaces.IUserDAO;
+import Model.DataEntities.User;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+public class InMemoryUserDAOImplementation implements IUserDAO {
+    private final InMemoryDatabase db;
+
+    public InMemoryUserDAOImplementation(InMemoryDatabase db) {
+        this.db = db;
+    }
+
+    @Override
+    public void add(User user, Connection... conns) throws SQLException {
+        db.users.insert(user.getUsername(), user, InMemoryTransaction.of(conns));
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username, Connection... conns) throws SQLException {
+        return Optional.ofNullable(db.users.get(username, InMemoryTransaction.of(conns)));
+    }
+
+    @Override
+    public List<User> findAll(Connection... conns) throws SQLException {
+        List<User> users = new ArrayList<>();
+        for (User u : db.users.scan(u -> true, InMemoryTransaction.of(conns))) {
+            users.add(new User(u.getUsername(), null, u.getRole(), u.getBranchId())); // Never send hash back to client
+        }
+        return users;
+    }
+
+    @Override
+    public void delete(String username, Connection... conns) throws SQLException {
+        db.users.write(username, InMemoryTransaction.of(conns), current -> null);
+    }
+}
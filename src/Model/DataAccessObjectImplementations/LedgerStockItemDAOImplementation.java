@@ -0,0 +1,320 @@
+package Model.DataAccessObjectImplementations;
+
+import Model.DataAccessObjectInterfaces.IStockItemDAO;
+import Model.DataEntities.LowStockEntry;
+import Model.DataEntities.StockItem;
+import Model.UtilitiesandServerEntryPoint.TransactionRunner;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+// stock.engine=ledger: this server's memory is the authority on stock, and stock_items is kept as its durable copy.
+// Branch and drink IDs are dictionary-encoded to dense ints, and each (branch, drink) is one slot in two int slabs
+// (quantity, threshold), so reads are array lookups and a sale is a compare-and-set per line.
+// Writes go through to the wrapped DAO on the caller's connection, so they commit or roll back with the order:
+//  - decrements are taken from the ledger first (that is the stock check) and given back if the transaction rolls back;
+//  - increments and absolute writes reach the ledger only once the transaction commits.
+// The database therefore never holds less than the ledger, and its CHECK (quantity >= 0) cannot trip on a write-through.
+// Only valid while this is the one server selling from the database: stock changed by anyone else is not seen until restart.
+public class LedgerStockItemDAOImplementation implements IStockItemDAO {
+    private static final int ABSENT = -1; // Quantity of a slot with no stock_items row
+
+    private final IStockItemDAO database;
+    private final int maxBranches;
+    private final int maxDrinks;
+    private final ConcurrentHashMap<String, Integer> branchCodes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> drinkCodes = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<String> branchIds;
+    private final AtomicReferenceArray<String> drinkIds;
+    private final AtomicInteger branchCount = new AtomicInteger();
+    private final AtomicInteger drinkCount = new AtomicInteger();
+    private final AtomicIntegerArray quantities; // slot = branch code * maxDrinks + drink code
+    private final AtomicIntegerArray thresholds;
+    private volatile Consumer<List<StockItem>> takeListener = rows -> {};
+
+    public LedgerStockItemDAOImplementation(IStockItemDAO database, int maxBranches, int maxDrinks) throws SQLException {
+        this.database = database;
+        this.maxBranches = maxBranches;
+        this.maxDrinks = maxDrinks;
+        this.branchIds = new AtomicReferenceArray<>(maxBranches);
+        this.drinkIds = new AtomicReferenceArray<>(maxDrinks);
+        this.quantities = new AtomicIntegerArray(maxBranches * maxDrinks);
+        this.thresholds = new AtomicIntegerArray(maxBranches * maxDrinks);
+        for (int i = 0; i < quantities.length(); i++) {
+            quantities.set(i, ABSENT);
+        }
+        List<StockItem> rows = database.findAll();
+        for (StockItem row : rows) {
+            int slot = slot(row.getBranchId(), row.getDrinkId(), true);
+            thresholds.set(slot, row.getMinimumThreshold());
+            quantities.set(slot, row.getQuantity());
+        }
+        System.out.println("Stock ledger loaded " + rows.size() + " stock rows (" + maxBranches + " branches x " + maxDrinks + " drinks capacity).");
+    }
+
+    public static LedgerStockItemDAOImplementation fromSystemProperties(IStockItemDAO database) throws SQLException {
+        return new LedgerStockItemDAOImplementation(database,
+                Integer.getInteger("stock.ledger.maxBranches", 64),
+                Integer.getInteger("stock.ledger.maxDrinks", 2048));
+    }
+
+    // -1 if the branch or drink has never been seen and create is false
+    private int slot(String branchId, String drinkId, boolean create) throws SQLException {
+        int branch = code(branchId, branchCodes, branchIds, branchCount, maxBranches, "stock.ledger.maxBranches", create);
+        int drink = branch < 0 ? -1 : code(drinkId, drinkCodes, drinkIds, drinkCount, maxDrinks, "stock.ledger.maxDrinks", create);
+        return drink < 0 ? -1 : branch * maxDrinks + drink;
+    }
+
+    private static int code(String id, ConcurrentHashMap<String, Integer> codes, AtomicReferenceArray<String> ids,
+                            AtomicInteger count, int max, String property, boolean create) throws SQLException {
+        Integer code = codes.get(id);
+        if (code != null || !create) {
+            return code == null ? -1 : code;
+        }
+        try {
+            return codes.computeIfAbsent(id, k -> {
+                int next = count.getAndIncrement();
+                if (next >= max) {
+                    count.decrementAndGet();
+                    throw new IllegalStateException("The stock ledger is full: raise " + property + " (now " + max + ")");
+                }
+                ids.set(next, k);
+                return next;
+            });
+        } catch (IllegalStateException e) {
+            throw new SQLException(e.getMessage(), e);
+        }
+    }
+
+    private StockItem itemAt(String branchId, String drinkId, int slot) {
+        int quantity = quantities.get(slot);
+        return quantity == ABSENT ? null : new StockItem(branchId, drinkId, quantity, thresholds.get(slot));
+    }
+
+    // Every row of a branch, or of every branch when branchId is null; lowOnly keeps those under their threshold
+    private List<StockItem> scan(String branchId, boolean lowOnly) {
+        List<StockItem> items = new ArrayList<>();
+        int branches = Math.min(branchCount.get(), maxBranches);
+        int drinks = Math.min(drinkCount.get(), maxDrinks);
+        for (int branch = 0; branch < branches; branch++) {
+            String branchName = branchIds.get(branch);
+            if (branchName == null || (branchId != null && !branchId.equals(branchName))) {
+                continue;
+            }
+            for (int drink = 0; drink < drinks; drink++) {
+                String drinkName = drinkIds.get(drink);
+                StockItem item = drinkName == null ? null : itemAt(branchName, drinkName, branch * maxDrinks + drink);
+                if (item != null && (!lowOnly || (item.getMinimumThreshold() > 0 && item.getQuantity() < item.getMinimumThreshold()))) {
+                    items.add(item);
+                }
+            }
+        }
+        return items;
+    }
+
+    // Takes quantity from the slot if it holds that much; returns what is left, or -1 if it did not
+    private int take(int slot, int quantity) {
+        while (true) {
+            int current = quantities.get(slot);
+            if (current == ABSENT || current < quantity) {
+                return -1;
+            }
+            if (quantities.compareAndSet(slot, current, current - quantity)) {
+                return current - quantity;
+            }
+        }
+    }
+
+    // Adds quantity to the slot, creating it (threshold 0) if it has no row yet
+    private void give(int slot, int quantity) {
+        while (true) {
+            int current = quantities.get(slot);
+            if (quantities.compareAndSet(slot, current, current == ABSENT ? quantity : current + quantity)) {
+                return;
+            }
+        }
+    }
+
+    private static boolean inTransaction(Connection... conns) throws SQLException {
+        return conns != null && conns.length > 0 && conns[0] != null && !conns[0].getAutoCommit();
+    }
+
+    // Without a caller transaction the write has already committed, so the ledger follows at once
+    private static void afterCommit(Runnable apply, Connection... conns) throws SQLException {
+        if (inTransaction(conns)) {
+            TransactionRunner.afterCompletion(committed -> {
+                if (committed) {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    private static void afterRollback(Runnable undo, Connection... conns) throws SQLException {
+        if (inTransaction(conns)) {
+            TransactionRunner.afterCompletion(committed -> {
+                if (!committed) {
+                    undo.run();
+                }
+            });
+        }
+    }
+
+    // Absolute writes become deltas against the row as the database has it, locked, so that write-throughs still in
+    // flight (already taken from the ledger, not yet committed) land on top of the new value in both places
+    private void writeAbsolute(String branchId, String drinkId, Integer quantity, Integer threshold, Connection... conns) throws SQLException {
+        if (!inTransaction(conns)) {
+            try {
+                TransactionRunner.run("stockLedgerWrite", conn -> {
+                    writeAbsolute(branchId, drinkId, quantity, threshold, conn);
+                    return null;
+                });
+            } catch (SQLException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new SQLException(e.getMessage(), e);
+            }
+            return;
+        }
+        List<StockItem> locked = database.findForUpdate(branchId, List.of(drinkId), conns[0]);
+        StockItem before = locked.isEmpty() ? null : locked.get(0);
+        if (quantity == null && before == null) {
+            throw new SQLException("Stock item not found for update or quantity unchanged: " + branchId + "/" + drinkId);
+        }
+        int newQuantity = quantity != null ? quantity : before.getQuantity();
+        int newThreshold = threshold != null ? threshold : (before == null ? 0 : before.getMinimumThreshold());
+        database.saveOrUpdate(new StockItem(branchId, drinkId, newQuantity, newThreshold), conns);
+        int slot = slot(branchId, drinkId, true);
+        afterCommit(() -> {
+            if (before == null) {
+                thresholds.set(slot, newThreshold);
+                give(slot, newQuantity);
+            } else {
+                give(slot, newQuantity - before.getQuantity());
+                thresholds.addAndGet(slot, newThreshold - before.getMinimumThreshold());
+            }
+        }, conns);
+    }
+
+    @Override
+    public void saveOrUpdate(StockItem stockItem, Connection... conns) throws SQLException {
+        writeAbsolute(stockItem.getBranchId(), stockItem.getDrinkId(), stockItem.getQuantity(), stockItem.getMinimumThreshold(), conns);
+    }
+
+    @Override
+    public void updateStockQuantity(String branchId, String drinkId, int newQuantity, Connection... conns) throws SQLException {
+        if (!findByBranchAndDrink(branchId, drinkId).isPresent()) {
+            throw new SQLException("Stock item not found for update or quantity unchanged: " + branchId + "/" + drinkId);
+        }
+        writeAbsolute(branchId, drinkId, newQuantity, null, conns);
+    }
+
+    @Override
+    public Optional<StockItem> findByBranchAndDrink(String branchId, String drinkId, Connection... conns) throws SQLException {
+        int slot = slot(branchId, drinkId, false);
+        return slot < 0 ? Optional.empty() : Optional.ofNullable(itemAt(branchId, drinkId, slot));
+    }
+
+    @Override
+    public List<StockItem> findByBranch(String branchId, Connection... conns) throws SQLException {
+        return branchCodes.containsKey(branchId) ? scan(branchId, false) : new ArrayList<>();
+    }
+
+    @Override
+    public List<StockItem> findAll(Connection... conns) throws SQLException {
+        return scan(null, false);
+    }
+
+    @Override
+    public List<StockItem> findAllLowStock(Connection... conns) throws SQLException {
+        return scan(null, true);
+    }
+
+    // Names live in the database, so this one reads its copy: committed stock, which is never less than the ledger holds
+    @Override
+    public List<LowStockEntry> findLowStock(String branchId, Connection... conns) throws SQLException {
+        return database.findLowStock(branchId, conns);
+    }
+
+    // No database locks: the values are the ledger's, and the compare-and-set in decrementStock is what stops overselling
+    @Override
+    public List<StockItem> findForUpdate(String branchId, Collection<String> drinkIds, Connection conn) throws SQLException {
+        List<StockItem> items = new ArrayList<>();
+        for (String drinkId : new TreeSet<>(drinkIds)) {
+            findByBranchAndDrink(branchId, drinkId).ifPresent(items::add);
+        }
+        return items;
+    }
+
+    @Override
+    public boolean decrementStock(String branchId, String drinkId, int quantity, Connection... conns) throws SQLException {
+        return decrementStock(branchId, Map.of(drinkId, quantity), conns).isEmpty();
+    }
+
+    @Override
+    public List<String> decrementStock(String branchId, Map<String, Integer> quantitiesByDrink, Connection... conns) throws SQLException {
+        Map<String, Integer> lines = new TreeMap<>(quantitiesByDrink); // Same lock order as the JDBC batch
+        Map<Integer, Integer> taken = new LinkedHashMap<>();
+        List<StockItem> after = new ArrayList<>();
+        List<String> shortDrinks = new ArrayList<>();
+        for (Map.Entry<String, Integer> line : lines.entrySet()) {
+            int slot = slot(branchId, line.getKey(), false);
+            int left = slot < 0 ? -1 : take(slot, line.getValue());
+            if (left >= 0) {
+                taken.put(slot, line.getValue());
+                after.add(new StockItem(branchId, line.getKey(), left, thresholds.get(slot)));
+            } else {
+                shortDrinks.add(line.getKey());
+            }
+        }
+        Runnable giveBack = () -> taken.forEach(this::give);
+        if (!shortDrinks.isEmpty()) {
+            giveBack.run(); // All lines or none, like the batch
+            return shortDrinks;
+        }
+        takeListener.accept(after);
+        try {
+            List<String> databaseShort = database.decrementStock(branchId, lines, conns);
+            if (!databaseShort.isEmpty()) {
+                giveBack.run();
+                System.err.println("Warn: stock_items holds less than the stock ledger at " + branchId + " for " + databaseShort + "; was it changed outside this server?");
+                return databaseShort;
+            }
+        } catch (SQLException e) {
+            giveBack.run();
+            throw e;
+        }
+        afterRollback(giveBack, conns);
+        return shortDrinks;
+    }
+
+    // Told, on the selling thread, the rows each batch decrement left: every slot's value from its own compare-and-set, handed over
+    // before the write-through waits on any database lock, so concurrent sales of one row are told in the order they took it.
+    // The decrement can still fail after this (the write-through, or the caller's transaction), so listeners must wait for the outcome.
+    public void onTaken(Consumer<List<StockItem>> listener) {
+        takeListener = listener;
+    }
+
+    @Override
+    public boolean addStock(String branchId, String drinkId, int quantity, Connection... conns) throws SQLException {
+        boolean created = database.addStock(branchId, drinkId, quantity, conns);
+        int slot = slot(branchId, drinkId, true);
+        afterCommit(() -> give(slot, quantity), conns);
+        return created;
+    }
+}
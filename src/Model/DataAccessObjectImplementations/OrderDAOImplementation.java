@@ -1,19 +1,49 @@
 package Model.DataAccessObjectImplementations;
 
 import Model.DataAccessObjectInterfaces.IOrderDAO;
+import Model.DataAccessObjectInterfaces.OrderFilter;
+import Model.DataAccessObjectInterfaces.RowCallback;
 import Model.DataEntities.Order;
 import Model.DataEntities.OrderItem;
 
 import java.sql.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class OrderDAOImplementation extends BaseDAO implements IOrderDAO {
+    private static final int STREAM_FETCH_SIZE = 500; // Rows per server-side cursor fetch (needs useCursorFetch=true)
+    // Public so SchemaMigrator can EXPLAIN them against the indexes it creates
+    public static final String FIND_ITEMS_BY_ORDER_SQL = "SELECT * FROM order_items WHERE order_id = ?";
+    public static final String FIND_BY_BRANCH_SQL = "SELECT * FROM orders WHERE branch_id = ?";
+    public static final String FIND_BY_CUSTOMER_SQL = "SELECT * FROM orders WHERE customer_id = ?";
+    // One row per order item (or one per item-less order), oldest order first; items come from the covering order_items index
+    private static final String WITH_ITEMS_COLUMNS = "SELECT o.order_id, o.customer_id, o.branch_id, o.order_timestamp, o.total_amount, o.idempotency_key, " +
+            "i.order_item_id, i.drink_id, i.quantity, i.price_at_time_of_order, i.item_total, d.name AS drink_name ";
+    private static final String WITH_ITEMS_JOINS = " o LEFT JOIN order_items i ON i.order_id = o.order_id LEFT JOIN drinks d ON d.drink_id = i.drink_id ";
+    private static final String WITH_ITEMS_ORDER = " ORDER BY o.order_timestamp, o.order_id";
+    public static final String FIND_WITH_ITEMS_BY_BRANCH_SQL = WITH_ITEMS_COLUMNS + "FROM orders" + WITH_ITEMS_JOINS + "WHERE o.branch_id = ?" + WITH_ITEMS_ORDER;
+    public static final String FIND_WITH_ITEMS_BY_CUSTOMER_SQL = WITH_ITEMS_COLUMNS + "FROM orders" + WITH_ITEMS_JOINS + "WHERE o.customer_id = ?" + WITH_ITEMS_ORDER;
+    private static final String INSERT_HEADER_SQL = "INSERT INTO orders(order_id, customer_id, branch_id, order_timestamp, total_amount, idempotency_key) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String FIND_BY_IDEMPOTENCY_KEY_SQL = "SELECT * FROM orders WHERE idempotency_key = ?";
 
     public void saveOrderHeader(Order order, Connection connection) throws SQLException {
-        String sql = "INSERT INTO orders(order_id, customer_id, branch_id, order_timestamp, total_amount) VALUES (?, ?, ?, ?, ?)";
+        String sql = INSERT_HEADER_SQL;
         PreparedStatement statement = null;
+        long start = 0;
+        int rows = -1;
         try {
             statement = connection.prepareStatement(sql);
             statement.setString(1, order.getOrderId());
@@ -21,8 +51,36 @@ public class OrderDAOImplementation extends BaseDAO implements IOrderDAO {
             statement.setString(3, order.getBranchId());
             statement.setTimestamp(4, Timestamp.valueOf(order.getOrderTimestamp()));
             statement.setDouble(5, order.getTotalAmount());
-            statement.executeUpdate();
+            statement.setString(6, order.getIdempotencyKey());
+            start = System.nanoTime();
+            rows = statement.executeUpdate();
         } finally {
+            recordQuery(sql, start, rows);
+            if (statement != null) statement.close();
+        }
+    }
+
+    @Override
+    public void saveOrderHeaders(List<Order> orders, Connection connection) throws SQLException {
+        PreparedStatement statement = null;
+        long start = 0;
+        int rows = -1;
+        try {
+            statement = connection.prepareStatement(INSERT_HEADER_SQL);
+            for (Order order : orders) {
+                statement.setString(1, order.getOrderId());
+                statement.setString(2, order.getCustomerId());
+                statement.setString(3, order.getBranchId());
+                statement.setTimestamp(4, Timestamp.valueOf(order.getOrderTimestamp()));
+                statement.setDouble(5, order.getTotalAmount());
+                statement.setString(6, order.getIdempotencyKey());
+                statement.addBatch();
+            }
+            start = System.nanoTime();
+            statement.executeBatch(); // One multi-row INSERT with rewriteBatchedStatements=true
+            rows = orders.size();
+        } finally {
+            recordQuery(INSERT_HEADER_SQL, start, rows);
             if (statement != null) statement.close();
         }
     }
@@ -30,6 +88,8 @@ public class OrderDAOImplementation extends BaseDAO implements IOrderDAO {
     public void saveOrderItems(List<OrderItem> items, Connection connection) throws SQLException {
         String sql = "INSERT INTO order_items(order_id, drink_id, quantity, price_at_time_of_order, item_total) VALUES (?, ?, ?, ?, ?)";
         PreparedStatement statement = null;
+        long start = 0;
+        int rows = -1;
         try {
             statement = connection.prepareStatement(sql);
             for (OrderItem item : items) {
@@ -40,14 +100,17 @@ public class OrderDAOImplementation extends BaseDAO implements IOrderDAO {
                 statement.setDouble(5, item.getItemTotal());
                 statement.addBatch();
             }
+            start = System.nanoTime();
             statement.executeBatch();
+            rows = items.size();
         } finally {
+            recordQuery(sql, start, rows);
             if (statement != null) statement.close();
         }
     }
 
     private Order mapRowToOrder(ResultSet resultSet) throws SQLException {
-        return new Order(
+        Order order = new Order(
                 resultSet.getString("order_id"),
                 resultSet.getString("customer_id"),
                 resultSet.getString("branch_id"),
@@ -55,6 +118,8 @@ public class OrderDAOImplementation extends BaseDAO implements IOrderDAO {
                 new ArrayList<>(),
                 resultSet.getDouble("total_amount")
         );
+        order.setIdempotencyKey(resultSet.getString("idempotency_key"));
+        return order;
     }
 
     private OrderItem mapRowToOrderItem(ResultSet resultSet) throws SQLException {
@@ -74,16 +139,50 @@ public class OrderDAOImplementation extends BaseDAO implements IOrderDAO {
         Connection connection = null;
         PreparedStatement statement = null;
         ResultSet resultSet = null;
+        long start = 0;
+        int rows = -1;
 
         try {
-            connection = getConnection(optionalConnection);
+            connection = getReadConnection(optionalConnection);
             statement = connection.prepareStatement(sql);
             statement.setString(1, id);
+            start = System.nanoTime();
+            resultSet = statement.executeQuery();
+            if (resultSet.next()) {
+                rows = 1;
+                return Optional.of(mapRowToOrder(resultSet));
+            }
+            rows = 0;
+        } finally {
+            recordQuery(sql, start, rows);
+            closeResources(resultSet, statement, connection, optionalConnection);
+        }
+
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Order> findByIdempotencyKey(String idempotencyKey, Connection... optionalConnection) throws SQLException {
+        String sql = FIND_BY_IDEMPOTENCY_KEY_SQL;
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        long start = 0;
+        int rows = -1;
+
+        try {
+            connection = getConnection(optionalConnection); // The order was usually committed moments ago; a replica may not have it yet
+            statement = connection.prepareStatement(sql);
+            statement.setString(1, idempotencyKey);
+            start = System.nanoTime();
             resultSet = statement.executeQuery();
             if (resultSet.next()) {
+                rows = 1;
                 return Optional.of(mapRowToOrder(resultSet));
             }
+            rows = 0;
         } finally {
+            recordQuery(sql, start, rows);
             closeResources(resultSet, statement, connection, optionalConnection);
         }
 
@@ -91,43 +190,162 @@ public class OrderDAOImplementation extends BaseDAO implements IOrderDAO {
     }
 
     public List<OrderItem> findItemsByOrderId(String orderId, Connection... optionalConnection) throws SQLException {
-        String sql = "SELECT * FROM order_items WHERE order_id = ?";
+        String sql = FIND_ITEMS_BY_ORDER_SQL;
         List<OrderItem> items = new ArrayList<>();
         Connection connection = null;
         PreparedStatement statement = null;
         ResultSet resultSet = null;
+        long start = 0;
+        int rows = -1;
 
         try {
-            connection = getConnection(optionalConnection);
+            connection = getReadConnection(optionalConnection);
             statement = connection.prepareStatement(sql);
             statement.setString(1, orderId);
+            start = System.nanoTime();
             resultSet = statement.executeQuery();
             while (resultSet.next()) {
                 items.add(mapRowToOrderItem(resultSet));
             }
+            rows = items.size();
         } finally {
+            recordQuery(sql, start, rows);
             closeResources(resultSet, statement, connection, optionalConnection);
         }
 
         return items;
     }
 
+    @Override
+    public List<OrderItem> findItemsByOrderIds(Collection<String> orderIds, Connection... optionalConnection) throws SQLException {
+        List<OrderItem> items = new ArrayList<>();
+        if (orderIds.isEmpty()) {
+            return items;
+        }
+        // Built per call because the IN list length varies
+        String sql = "SELECT * FROM order_items WHERE order_id IN (" + String.join(", ", Collections.nCopies(orderIds.size(), "?")) + ")";
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        long start = 0;
+        int rows = -1;
+
+        try {
+            connection = getReadConnection(optionalConnection);
+            statement = connection.prepareStatement(sql);
+            int index = 1;
+            for (String orderId : orderIds) {
+                statement.setString(index++, orderId);
+            }
+            start = System.nanoTime();
+            resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                items.add(mapRowToOrderItem(resultSet));
+            }
+            rows = items.size();
+        } finally {
+            recordQuery(sql, start, rows);
+            closeResources(resultSet, statement, connection, optionalConnection);
+        }
+
+        return items;
+    }
+
+    @Override
+    public List<Order> findByBranchIdWithItems(String branchId, Connection... optionalConnection) throws SQLException {
+        return findWithItems(FIND_WITH_ITEMS_BY_BRANCH_SQL, List.of(branchId), optionalConnection);
+    }
+
+    @Override
+    public List<Order> findByCustomerIdWithItems(String customerId, Connection... optionalConnection) throws SQLException {
+        return findWithItems(FIND_WITH_ITEMS_BY_CUSTOMER_SQL, List.of(customerId), optionalConnection);
+    }
+
+    @Override
+    public List<Order> findPageWithItems(OrderFilter filter, LocalDateTime afterTimestamp, String afterOrderId, int limit, Connection... optionalConnection) throws SQLException {
+        // Keyset seek: the page is cut from the (branch_id|customer_id, order_timestamp) index, whose entries end with the order_id
+        // primary key, so page N reads the same few index entries as page 1. Items are joined to the page only.
+        StringBuilder page = new StringBuilder("SELECT * FROM orders WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        appendFilter(filter, page, params);
+        if (afterTimestamp != null) {
+            page.append(" AND (order_timestamp > ? OR (order_timestamp = ? AND order_id > ?))");
+            params.add(Timestamp.valueOf(afterTimestamp));
+            params.add(Timestamp.valueOf(afterTimestamp));
+            params.add(afterOrderId);
+        }
+        page.append(" ORDER BY order_timestamp, order_id LIMIT ?");
+        params.add(limit);
+        return findWithItems(WITH_ITEMS_COLUMNS + "FROM (" + page + ")" + WITH_ITEMS_JOINS + WITH_ITEMS_ORDER, params, optionalConnection);
+    }
+
+    // Assembles the order/item graph in a single pass over the joined rows
+    private List<Order> findWithItems(String sql, List<Object> params, Connection... optionalConnection) throws SQLException {
+        Map<String, Order> orders = new LinkedHashMap<>();
+        Map<String, List<OrderItem>> itemsByOrder = new HashMap<>();
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        long start = 0;
+        int rows = -1;
+
+        try {
+            connection = getReadConnection(optionalConnection);
+            statement = connection.prepareStatement(sql);
+            for (int i = 0; i < params.size(); i++) {
+                statement.setObject(i + 1, params.get(i));
+            }
+            start = System.nanoTime();
+            resultSet = statement.executeQuery();
+            int rowCount = 0;
+            while (resultSet.next()) {
+                rowCount++;
+                String orderId = resultSet.getString("order_id");
+                Order order = orders.get(orderId);
+                if (order == null) {
+                    orders.put(orderId, mapRowToOrder(resultSet));
+                    itemsByOrder.put(orderId, new ArrayList<>());
+                }
+                if (resultSet.getString("drink_id") != null) { // Null for an order with no items
+                    OrderItem item = mapRowToOrderItem(resultSet);
+                    String drinkName = resultSet.getString("drink_name");
+                    item.setDrinkName(drinkName != null ? drinkName : "Unknown");
+                    itemsByOrder.get(orderId).add(item);
+                }
+            }
+            rows = rowCount;
+        } finally {
+            recordQuery(sql, start, rows);
+            closeResources(resultSet, statement, connection, optionalConnection);
+        }
+
+        for (Order order : orders.values()) {
+            order.setItems(itemsByOrder.get(order.getOrderId()));
+        }
+        return new ArrayList<>(orders.values());
+    }
+
     public List<Order> findByBranchId(String branchId, Connection... optionalConnection) throws SQLException {
-        String sql = "SELECT * FROM orders WHERE branch_id = ?";
+        String sql = FIND_BY_BRANCH_SQL;
         List<Order> orders = new ArrayList<>();
         Connection connection = null;
         PreparedStatement statement = null;
         ResultSet resultSet = null;
+        long start = 0;
+        int rows = -1;
 
         try {
-            connection = getConnection(optionalConnection);
+            connection = getReadConnection(optionalConnection);
             statement = connection.prepareStatement(sql);
             statement.setString(1, branchId);
+            start = System.nanoTime();
             resultSet = statement.executeQuery();
             while (resultSet.next()) {
                 orders.add(mapRowToOrder(resultSet));
             }
+            rows = orders.size();
         } finally {
+            recordQuery(sql, start, rows);
             closeResources(resultSet, statement, connection, optionalConnection);
         }
 
@@ -135,21 +353,26 @@ public class OrderDAOImplementation extends BaseDAO implements IOrderDAO {
     }
 
     public List<Order> findByCustomerId(String customerId, Connection... optionalConnection) throws SQLException {
-        String sql = "SELECT * FROM orders WHERE customer_id = ?";
+        String sql = FIND_BY_CUSTOMER_SQL;
         List<Order> orders = new ArrayList<>();
         Connection connection = null;
         PreparedStatement statement = null;
         ResultSet resultSet = null;
+        long start = 0;
+        int rows = -1;
 
         try {
-            connection = getConnection(optionalConnection);
+            connection = getReadConnection(optionalConnection);
             statement = connection.prepareStatement(sql);
             statement.setString(1, customerId);
+            start = System.nanoTime();
             resultSet = statement.executeQuery();
             while (resultSet.next()) {
                 orders.add(mapRowToOrder(resultSet));
             }
+            rows = orders.size();
         } finally {
+            recordQuery(sql, start, rows);
             closeResources(resultSet, statement, connection, optionalConnection);
         }
 
@@ -162,18 +385,138 @@ public class OrderDAOImplementation extends BaseDAO implements IOrderDAO {
         Connection connection = null;
         Statement statement = null;
         ResultSet resultSet = null;
+        long start = 0;
+        int rows = -1;
 
         try {
-            connection = getConnection(optionalConnection);
+            connection = getReadConnection(optionalConnection);
             statement = connection.createStatement();
+            start = System.nanoTime();
             resultSet = statement.executeQuery(sql);
             while (resultSet.next()) {
                 orders.add(mapRowToOrder(resultSet));
             }
+            rows = orders.size();
         } finally {
+            recordQuery(sql, start, rows);
             closeResources(resultSet, statement, connection, optionalConnection);
         }
 
         return orders;
     }
+
+    @Override
+    public void forEachOrder(OrderFilter filter, RowCallback<Order> callback, Connection... optionalConnection) throws SQLException {
+        try (Stream<Order> orders = streamOrders(filter, optionalConnection)) {
+            Iterator<Order> iterator = orders.iterator();
+            while (iterator.hasNext()) {
+                callback.accept(iterator.next());
+            }
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Stream<Order> streamOrders(OrderFilter filter, Connection... optionalConnection) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT order_id, customer_id, branch_id, order_timestamp, total_amount, idempotency_key FROM orders WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        appendFilter(filter, sql, params);
+        String query = sql.toString();
+
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        long start = 0;
+        try {
+            connection = getReadConnection(optionalConnection);
+            // Forward-only, read-only and a fetch size: MySQL then streams the rows through a cursor instead of buffering them
+            statement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            for (int i = 0; i < params.size(); i++) {
+                statement.setObject(i + 1, params.get(i));
+            }
+            start = System.nanoTime();
+            resultSet = statement.executeQuery();
+        } catch (SQLException | RuntimeException e) {
+            recordQuery(query, start, -1);
+            closeResources(resultSet, statement, connection, optionalConnection);
+            throw e;
+        }
+
+        OrderCursor cursor = new OrderCursor(resultSet);
+        Connection openConnection = connection;
+        PreparedStatement openStatement = statement;
+        ResultSet openResultSet = resultSet;
+        long startNanos = start;
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    recordQuery(query, startNanos, cursor.failed ? -1 : cursor.rows);
+                    closeResources(openResultSet, openStatement, openConnection, optionalConnection);
+                });
+    }
+
+    private static void appendFilter(OrderFilter filter, StringBuilder sql, List<Object> params) {
+        if (filter.getBranchId() != null) {
+            sql.append(" AND branch_id = ?");
+            params.add(filter.getBranchId());
+        }
+        if (filter.getCustomerId() != null) {
+            sql.append(" AND customer_id = ?");
+            params.add(filter.getCustomerId());
+        }
+        if (filter.getFrom() != null) {
+            sql.append(" AND order_timestamp >= ?");
+            params.add(Timestamp.valueOf(filter.getFrom()));
+        }
+        if (filter.getTo() != null) {
+            sql.append(" AND order_timestamp < ?");
+            params.add(Timestamp.valueOf(filter.getTo()));
+        }
+    }
+
+    // Pulls one row ahead so hasNext() can answer without consuming anything the caller has not asked for
+    private class OrderCursor implements Iterator<Order> {
+        private final ResultSet resultSet;
+        private Order next;
+        private boolean done;
+        long rows;
+        boolean failed;
+
+        OrderCursor(ResultSet resultSet) {
+            this.resultSet = resultSet;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                try {
+                    if (resultSet.next()) {
+                        next = mapRowToOrder(resultSet);
+                        rows++;
+                    } else {
+                        done = true;
+                    }
+                } catch (SQLException e) {
+                    failed = true;
+                    done = true;
+                    throw new RuntimeException("Error reading order stream: " + e.getMessage(), e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Order next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Order current = next;
+            next = null;
+            return current;
+        }
+    }
 }
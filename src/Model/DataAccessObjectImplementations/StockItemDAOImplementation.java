@@ -1,12 +1,17 @@
 package Model.DataAccessObjectImplementations;
 
 import Model.DataAccessObjectInterfaces.IStockItemDAO;
+import Model.DataEntities.LowStockEntry;
 import Model.DataEntities.StockItem;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 public class StockItemDAOImplementation extends BaseDAO implements IStockItemDAO {
 
@@ -25,18 +30,45 @@ public class StockItemDAOImplementation extends BaseDAO implements IStockItemDAO
             "SELECT branch_id, drink_id, quantity, minimum_threshold " +
                     "FROM stock_items WHERE branch_id = ?";
 
-    private static final String FIND_LOW_STOCK_SQL =
+    private static final String FIND_ALL_SQL =
+            "SELECT branch_id, drink_id, quantity, minimum_threshold FROM stock_items";
+
+    public static final String FIND_LOW_STOCK_SQL = // Public so SchemaMigrator can EXPLAIN it
             "SELECT si.branch_id, si.drink_id, si.quantity, si.minimum_threshold " +
                     "FROM stock_items si " +
                     "WHERE si.quantity < si.minimum_threshold AND si.minimum_threshold > 0";
 
+    private static final String FIND_LOW_STOCK_ENTRIES_SQL =
+            "SELECT si.branch_id, b.name AS branch_name, si.drink_id, d.name AS drink_name, si.quantity, si.minimum_threshold " +
+                    "FROM stock_items si " +
+                    "JOIN branches b ON b.branch_id = si.branch_id " +
+                    "JOIN drinks d ON d.drink_id = si.drink_id " +
+                    "WHERE si.quantity < si.minimum_threshold AND si.minimum_threshold > 0";
+
+    private static final String FIND_LOW_STOCK_ENTRIES_ORDER = " ORDER BY si.branch_id, si.drink_id";
+
+    public static final String FIND_LOW_STOCK_BY_BRANCH_SQL = // Public so SchemaMigrator can EXPLAIN it
+            FIND_LOW_STOCK_ENTRIES_SQL + " AND si.branch_id = ?" + FIND_LOW_STOCK_ENTRIES_ORDER;
+
     private static final String UPDATE_QUANTITY_SQL =
             "UPDATE stock_items SET quantity = ? WHERE branch_id = ? AND drink_id = ?";
 
+    // The guard makes the check and the write one atomic statement, so concurrent sales cannot oversell or lose updates
+    private static final String DECREMENT_SQL =
+            "UPDATE stock_items SET quantity = quantity - ? " +
+                    "WHERE branch_id = ? AND drink_id = ? AND quantity >= ?";
+
+    private static final String ADD_STOCK_SQL =
+            "INSERT INTO stock_items (branch_id, drink_id, quantity, minimum_threshold) " +
+                    "VALUES (?, ?, ?, 0) " +
+                    "ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity)";
+
     @Override
     public void saveOrUpdate(StockItem stockItem, Connection... conns) throws SQLException {
         Connection conn = null;
         PreparedStatement pstmt = null;
+        long start = 0;
+        int rows = -1;
 
         try {
             conn = getConnection(conns);
@@ -45,8 +77,10 @@ public class StockItemDAOImplementation extends BaseDAO implements IStockItemDAO
             pstmt.setString(2, stockItem.getDrinkId());
             pstmt.setInt(3, stockItem.getQuantity());
             pstmt.setInt(4, stockItem.getMinimumThreshold());
-            pstmt.executeUpdate();
+            start = System.nanoTime();
+            rows = pstmt.executeUpdate();
         } finally {
+            recordQuery(SAVE_OR_UPDATE_SQL, start, rows);
             closeResources(pstmt, conn, conns);
         }
     }
@@ -56,15 +90,19 @@ public class StockItemDAOImplementation extends BaseDAO implements IStockItemDAO
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
+        long start = 0;
+        int rows = -1;
 
         try {
-            conn = getConnection(conns);
+            conn = getReadConnection(conns);
             pstmt = conn.prepareStatement(FIND_BY_PK_SQL);
             pstmt.setString(1, branchId);
             pstmt.setString(2, drinkId);
+            start = System.nanoTime();
             rs = pstmt.executeQuery();
 
             if (rs.next()) {
+                rows = 1;
                 return Optional.of(new StockItem(
                         rs.getString("branch_id"),
                         rs.getString("drink_id"),
@@ -72,7 +110,9 @@ public class StockItemDAOImplementation extends BaseDAO implements IStockItemDAO
                         rs.getInt("minimum_threshold")
                 ));
             }
+            rows = 0;
         } finally {
+            recordQuery(FIND_BY_PK_SQL, start, rows);
             closeResources(rs, pstmt, conn, conns);
         }
 
@@ -85,11 +125,46 @@ public class StockItemDAOImplementation extends BaseDAO implements IStockItemDAO
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
+        long start = 0;
+        int rows = -1;
 
         try {
-            conn = getConnection(conns);
+            conn = getReadConnection(conns);
             pstmt = conn.prepareStatement(FIND_BY_BRANCH_SQL);
             pstmt.setString(1, branchId);
+            start = System.nanoTime();
+            rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                items.add(new StockItem(
+                        rs.getString("branch_id"),
+                        rs.getString("drink_id"),
+                        rs.getInt("quantity"),
+                        rs.getInt("minimum_threshold")
+                ));
+            }
+            rows = items.size();
+        } finally {
+            recordQuery(FIND_BY_BRANCH_SQL, start, rows);
+            closeResources(rs, pstmt, conn, conns);
+        }
+
+        return items;
+    }
+
+    @Override
+    public List<StockItem> findAll(Connection... conns) throws SQLException {
+        List<StockItem> items = new ArrayList<>();
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        long start = 0;
+        int rows = -1;
+
+        try {
+            conn = getConnection(conns); // Used to load the stock ledger, which must not start from a lagging replica
+            pstmt = conn.prepareStatement(FIND_ALL_SQL);
+            start = System.nanoTime();
             rs = pstmt.executeQuery();
 
             while (rs.next()) {
@@ -100,7 +175,9 @@ public class StockItemDAOImplementation extends BaseDAO implements IStockItemDAO
                         rs.getInt("minimum_threshold")
                 ));
             }
+            rows = items.size();
         } finally {
+            recordQuery(FIND_ALL_SQL, start, rows);
             closeResources(rs, pstmt, conn, conns);
         }
 
@@ -113,10 +190,13 @@ public class StockItemDAOImplementation extends BaseDAO implements IStockItemDAO
         Connection conn = null;
         Statement stmt = null;
         ResultSet rs = null;
+        long start = 0;
+        int rows = -1;
 
         try {
-            conn = getConnection(conns);
+            conn = getReadConnection(conns);
             stmt = conn.createStatement();
+            start = System.nanoTime();
             rs = stmt.executeQuery(FIND_LOW_STOCK_SQL);
 
             while (rs.next()) {
@@ -127,17 +207,59 @@ public class StockItemDAOImplementation extends BaseDAO implements IStockItemDAO
                         rs.getInt("minimum_threshold")
                 ));
             }
+            rows = items.size();
         } finally {
+            recordQuery(FIND_LOW_STOCK_SQL, start, rows);
             closeResources(rs, stmt, conn, conns);
         }
 
         return items;
     }
 
+    @Override
+    public List<LowStockEntry> findLowStock(String branchId, Connection... conns) throws SQLException {
+        String sql = branchId == null ? FIND_LOW_STOCK_ENTRIES_SQL + FIND_LOW_STOCK_ENTRIES_ORDER : FIND_LOW_STOCK_BY_BRANCH_SQL;
+        List<LowStockEntry> entries = new ArrayList<>();
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        long start = 0;
+        int rows = -1;
+
+        try {
+            conn = getReadConnection(conns);
+            pstmt = conn.prepareStatement(sql);
+            if (branchId != null) {
+                pstmt.setString(1, branchId);
+            }
+            start = System.nanoTime();
+            rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                entries.add(new LowStockEntry(
+                        rs.getString("branch_id"),
+                        rs.getString("branch_name"),
+                        rs.getString("drink_id"),
+                        rs.getString("drink_name"),
+                        rs.getInt("quantity"),
+                        rs.getInt("minimum_threshold")
+                ));
+            }
+            rows = entries.size();
+        } finally {
+            recordQuery(sql, start, rows);
+            closeResources(rs, pstmt, conn, conns);
+        }
+
+        return entries;
+    }
+
     @Override
     public void updateStockQuantity(String branchId, String drinkId, int newQuantity, Connection... conns) throws SQLException {
         Connection conn = null;
         PreparedStatement pstmt = null;
+        long start = 0;
+        int rows = -1;
 
         try {
             conn = getConnection(conns);
@@ -146,13 +268,143 @@ public class StockItemDAOImplementation extends BaseDAO implements IStockItemDAO
             pstmt.setString(2, branchId);
             pstmt.setString(3, drinkId);
 
+            start = System.nanoTime();
             int affectedRows = pstmt.executeUpdate();
+            rows = affectedRows;
             if (affectedRows == 0) {
                 throw new SQLException("Stock item not found for update or quantity unchanged: " + branchId + "/" + drinkId);
             }
         } finally {
+            recordQuery(UPDATE_QUANTITY_SQL, start, rows);
             closeResources(pstmt, conn, conns);
         }
     }
-}
 
+    @Override
+    public boolean decrementStock(String branchId, String drinkId, int quantity, Connection... conns) throws SQLException {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        long start = 0;
+        int rows = -1;
+
+        try {
+            conn = getConnection(conns);
+            pstmt = conn.prepareStatement(DECREMENT_SQL);
+            pstmt.setInt(1, quantity);
+            pstmt.setString(2, branchId);
+            pstmt.setString(3, drinkId);
+            pstmt.setInt(4, quantity);
+            start = System.nanoTime();
+            rows = pstmt.executeUpdate();
+            return rows == 1;
+        } finally {
+            recordQuery(DECREMENT_SQL, start, rows);
+            closeResources(pstmt, conn, conns);
+        }
+    }
+
+    @Override
+    public List<String> decrementStock(String branchId, Map<String, Integer> quantitiesByDrink, Connection... conns) throws SQLException {
+        List<String> shortDrinks = new ArrayList<>();
+        if (quantitiesByDrink.isEmpty()) {
+            return shortDrinks;
+        }
+        // Drink ID order, so two orders touching the same drinks lock their rows in the same order and cannot deadlock
+        List<String> drinkIds = new ArrayList<>(new TreeMap<>(quantitiesByDrink).keySet());
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        long start = 0;
+        int rows = -1;
+
+        try {
+            conn = getConnection(conns);
+            pstmt = conn.prepareStatement(DECREMENT_SQL);
+            for (String drinkId : drinkIds) {
+                int quantity = quantitiesByDrink.get(drinkId);
+                pstmt.setInt(1, quantity);
+                pstmt.setString(2, branchId);
+                pstmt.setString(3, drinkId);
+                pstmt.setInt(4, quantity);
+                pstmt.addBatch();
+            }
+            start = System.nanoTime();
+            // rewriteBatchedStatements sends the whole batch in one round trip; the counts still come back per statement
+            int[] counts = pstmt.executeBatch();
+            rows = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 1) {
+                    rows++;
+                } else {
+                    shortDrinks.add(drinkIds.get(i)); // 0: guard failed or no row
+                }
+            }
+            return shortDrinks;
+        } finally {
+            recordQuery(DECREMENT_SQL, start, rows);
+            closeResources(pstmt, conn, conns);
+        }
+    }
+
+    @Override
+    public List<StockItem> findForUpdate(String branchId, Collection<String> drinkIds, Connection conn) throws SQLException {
+        List<StockItem> items = new ArrayList<>();
+        if (drinkIds.isEmpty()) {
+            return items;
+        }
+        // Built per call because the IN list length varies; locks are taken in primary key order
+        String sql = "SELECT branch_id, drink_id, quantity, minimum_threshold FROM stock_items " +
+                "WHERE branch_id = ? AND drink_id IN (" + String.join(", ", Collections.nCopies(drinkIds.size(), "?")) + ") " +
+                "ORDER BY drink_id FOR UPDATE";
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        long start = 0;
+        int rows = -1;
+
+        try {
+            pstmt = conn.prepareStatement(sql); // Always the caller's transaction, never the replica
+            pstmt.setString(1, branchId);
+            int index = 2;
+            for (String drinkId : drinkIds) {
+                pstmt.setString(index++, drinkId);
+            }
+            start = System.nanoTime();
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                items.add(new StockItem(
+                        rs.getString("branch_id"),
+                        rs.getString("drink_id"),
+                        rs.getInt("quantity"),
+                        rs.getInt("minimum_threshold")
+                ));
+            }
+            rows = items.size();
+        } finally {
+            recordQuery(sql, start, rows);
+            closeResources(rs, pstmt, conn, conn);
+        }
+
+        return items;
+    }
+
+    @Override
+    public boolean addStock(String branchId, String drinkId, int quantity, Connection... conns) throws SQLException {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        long start = 0;
+        int rows = -1;
+
+        try {
+            conn = getConnection(conns);
+            pstmt = conn.prepareStatement(ADD_STOCK_SQL);
+            pstmt.setString(1, branchId);
+            pstmt.setString(2, drinkId);
+            pstmt.setInt(3, quantity);
+            start = System.nanoTime();
+            rows = pstmt.executeUpdate();
+            return rows == 1; // MySQL reports 1 for an inserted row and 2 for an updated one
+        } finally {
+            recordQuery(ADD_STOCK_SQL, start, rows);
+            closeResources(pstmt, conn, conns);
+        }
+    }
+}
@@ -14,6 +14,8 @@ public class UserDAOImplementation extends BaseDAO implements IUserDAO {
         String sql = "INSERT INTO users (username, hashed_password, role, branch_id) VALUES (?, ?, ?, ?)";
         Connection conn = null;
         PreparedStatement pstmt = null;
+        long start = 0;
+        int rows = -1;
         try {
             conn = getConnection(conns);
             pstmt = conn.prepareStatement(sql);
@@ -26,8 +28,10 @@ public class UserDAOImplementation extends BaseDAO implements IUserDAO {
             } else {
                 pstmt.setString(4, user.getBranchId());
             }
-            pstmt.executeUpdate();
+            start = System.nanoTime();
+            rows = pstmt.executeUpdate();
         } finally {
+            recordQuery(sql, start, rows);
             closeResources(pstmt, conn, conns);
         }
     }
@@ -38,15 +42,21 @@ public class UserDAOImplementation extends BaseDAO implements IUserDAO {
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
+        long start = 0;
+        int rows = -1;
         try {
-            conn = getConnection(conns);
+            conn = getReadConnection(conns);
             pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, username);
+            start = System.nanoTime();
             rs = pstmt.executeQuery();
             if (rs.next()) {
+                rows = 1;
                 return Optional.of(new User(rs.getString("username"), rs.getString("hashed_password"), User.UserRole.valueOf(rs.getString("role")), rs.getString("branch_id")));
             }
+            rows = 0;
         } finally {
+            recordQuery(sql, start, rows);
             closeResources(rs, pstmt, conn, conns);
         }
         return Optional.empty();
@@ -59,9 +69,12 @@ public class UserDAOImplementation extends BaseDAO implements IUserDAO {
         Connection conn = null;
         Statement stmt = null;
         ResultSet rs = null;
+        long start = 0;
+        int rows = -1;
         try {
-            conn = getConnection(conns);
+            conn = getReadConnection(conns);
             stmt = conn.createStatement();
+            start = System.nanoTime();
             rs = stmt.executeQuery(sql);
             while (rs.next()) {
                 users.add(new User(
@@ -71,7 +84,9 @@ public class UserDAOImplementation extends BaseDAO implements IUserDAO {
                         rs.getString("branch_id")
                 ));
             }
+            rows = users.size();
         } finally {
+            recordQuery(sql, start, rows);
             closeResources(rs, stmt, conn, conns);
         }
         return users;
@@ -82,12 +97,16 @@ public class UserDAOImplementation extends BaseDAO implements IUserDAO {
         String sql = "DELETE FROM users WHERE username = ?";
         Connection conn = null;
         PreparedStatement pstmt = null;
+        long start = 0;
+        int rows = -1;
         try {
             conn = getConnection(conns);
             pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, username);
-            pstmt.executeUpdate();
+            start = System.nanoTime();
+            rows = pstmt.executeUpdate();
         } finally {
+            recordQuery(sql, start, rows);
             closeResources(pstmt, conn, conns);
         }
     }
@@ -5,16 +5,30 @@ import Model.DataEntities.OrderItem;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface IOrderDAO {
+    String IDEMPOTENCY_KEY_INDEX = "uq_orders_idempotency_key"; // Named in the duplicate-key error when a key is reused
+
     void saveOrderHeader(Order order, Connection conn) throws SQLException; // Requires explicit connection for transaction
     void saveOrderItems(List<OrderItem> items, Connection conn) throws SQLException;// Requires explicit connection for transaction
+    void saveOrderHeaders(List<Order> orders, Connection conn) throws SQLException; // Batched; items of all orders can go through one saveOrderItems call
     Optional<Order> findbyId(String orderId,Connection...conn) throws SQLException;
+    Optional<Order> findByIdempotencyKey(String idempotencyKey,Connection... conn) throws SQLException; // Header only, read from the primary
     List<Order> findByBranchId(String branchId,Connection...conn) throws SQLException;
     List<Order> findByCustomerId(String customerId,Connection...conn) throws SQLException;
     List<Order> findAll(Connection... conn) throws SQLException;
     List<OrderItem> findItemsByOrderId(String orderId,Connection... conn) throws SQLException;
+    List<OrderItem> findItemsByOrderIds(Collection<String> orderIds,Connection... conn) throws SQLException; // One query for a whole chunk of orders
+    List<Order> findByBranchIdWithItems(String branchId,Connection... conn) throws SQLException; // Items and drink names filled in by one joined query
+    List<Order> findByCustomerIdWithItems(String customerId,Connection... conn) throws SQLException; // Items and drink names filled in by one joined query
+    // Keyset page: up to limit orders matching the filter that sort after (afterTimestamp, afterOrderId), with items; null "after" = first page
+    List<Order> findPageWithItems(OrderFilter filter, LocalDateTime afterTimestamp, String afterOrderId, int limit, Connection... conn) throws SQLException;
+    void forEachOrder(OrderFilter filter, RowCallback<Order> callback, Connection... conn) throws SQLException; // Constant memory, one row at a time
+    Stream<Order> streamOrders(OrderFilter filter, Connection... conn) throws SQLException; // Forward-only cursor; close the stream to release the connection
 }
 
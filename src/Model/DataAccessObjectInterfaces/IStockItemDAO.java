@@ -1,17 +1,26 @@
 package Model.DataAccessObjectInterfaces;
 
+import Model.DataEntities.LowStockEntry;
 import Model.DataEntities.StockItem;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface IStockItemDAO {
     void saveOrUpdate(StockItem stockItem, Connection... conn) throws SQLException;
     Optional<StockItem> findByBranchAndDrink(String branchId,String drinkId,Connection... conn) throws SQLException;
     List<StockItem> findByBranch(String branchId,Connection... conn) throws SQLException;
+    List<StockItem> findAll(Connection... conn) throws SQLException;
     List<StockItem> findAllLowStock(Connection... conn) throws SQLException;// Simplified, enrichment happens in service
+    List<LowStockEntry> findLowStock(String branchId,Connection... conn) throws SQLException;// With branch and drink names; branchId null for every branch. By branch, then drink
     void updateStockQuantity(String branchId,String drinkId,int newQuantity,Connection...conn) throws SQLException;
+    boolean decrementStock(String branchId,String drinkId,int quantity,Connection... conn) throws SQLException;// False if the row is missing or holds less than quantity; nothing is changed then
+    List<String> decrementStock(String branchId,Map<String,Integer> quantitiesByDrink,Connection... conn) throws SQLException;// All lines in one batch; returns the drinks that were short. Roll back if not empty.
+    List<StockItem> findForUpdate(String branchId,Collection<String> drinkIds,Connection conn) throws SQLException;// SELECT ... FOR UPDATE in drink ID order; rows stay locked until conn commits
+    boolean addStock(String branchId,String drinkId,int quantity,Connection... conn) throws SQLException;// True if the row had to be created (threshold 0)
 
 }
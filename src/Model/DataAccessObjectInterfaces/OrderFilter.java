@@ -0,0 +1,31 @@
+package Model.DataAccessObjectInterfaces;
+
+import java.time.LocalDateTime;
+
+// Which orders a streaming query should return. Null fields are not filtered on.
+public class OrderFilter {
+    private final String branchId;
+    private final String customerId;
+    private final LocalDateTime from; // Inclusive
+    private final LocalDateTime to;   // Exclusive
+
+    private OrderFilter(String branchId, String customerId, LocalDateTime from, LocalDateTime to) {
+        this.branchId = branchId;
+        this.customerId = customerId;
+        this.from = from;
+        this.to = to;
+    }
+
+    public static OrderFilter all() { return new OrderFilter(null, null, null, null); }
+    public static OrderFilter byBranch(String branchId) { return new OrderFilter(branchId, null, null, null); }
+    public static OrderFilter byCustomer(String customerId) { return new OrderFilter(null, customerId, null, null); }
+
+    public OrderFilter between(LocalDateTime from, LocalDateTime to) {
+        return new OrderFilter(branchId, customerId, from, to);
+    }
+
+    public String getBranchId() { return branchId; }
+    public String getCustomerId() { return customerId; }
+    public LocalDateTime getFrom() { return from; }
+    public LocalDateTime getTo() { return to; }
+}
@@ -0,0 +1,9 @@
+package Model.DataAccessObjectInterfaces;
+
+import java.sql.SQLException;
+
+// Receives rows one at a time from a streaming DAO query, so callers never hold the whole result in memory
+@FunctionalInterface
+public interface RowCallback<T> {
+    void accept(T row) throws SQLException;
+}
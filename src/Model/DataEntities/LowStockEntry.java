@@ -0,0 +1,37 @@
+package Model.DataEntities;
+
+import java.io.Serializable;
+
+// One stock row below its minimum threshold, with the branch and drink names so clients can show and sort it as is
+public class LowStockEntry implements Serializable {
+    private static final long serialVersionUID=111L;
+    private final String branchId;
+    private final String branchName;
+    private final String drinkId;
+    private final String drinkName;
+    private final int quantity;
+    private final int minimumThreshold;
+
+    public LowStockEntry(String branchId,String branchName,String drinkId,String drinkName,int quantity,int minimumThreshold){
+        this.branchId=branchId;
+        this.branchName=branchName;
+        this.drinkId=drinkId;
+        this.drinkName=drinkName;
+        this.quantity=quantity;
+        this.minimumThreshold=minimumThreshold;
+    }
+
+    //Getters
+    public String getBranchId(){return branchId;}
+    public String getBranchName(){return branchName;}
+    public String getDrinkId(){return drinkId;}
+    public String getDrinkName(){return drinkName;}
+    public int getQuantity(){return quantity;}
+    public int getMinimumThreshold(){return minimumThreshold;}
+    public int getShortfall(){return minimumThreshold-quantity;}
+
+    @Override
+    public String toString(){
+        return String.format("LOW STOCK: Branch '%s' (%s) - Drink '%s' (%s). Qty: %d, Threshold: %d", branchName, branchId, drinkName, drinkId, quantity, minimumThreshold);
+    }
+}
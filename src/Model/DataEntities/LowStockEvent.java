@@ -0,0 +1,37 @@
+package Model.DataEntities;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// Pushed to stock alert listeners when a stock row crosses its minimum threshold: low = it fell below, otherwise it recovered
+public class LowStockEvent implements Serializable {
+    private static final long serialVersionUID=110L;
+    private final String branchId;
+    private final String drinkId;
+    private final int quantity;
+    private final int minimumThreshold;
+    private final boolean low;
+    private final LocalDateTime occurredAt;
+
+    public LowStockEvent(String branchId,String drinkId,int quantity,int minimumThreshold,boolean low,LocalDateTime occurredAt){
+        this.branchId=branchId;
+        this.drinkId=drinkId;
+        this.quantity=quantity;
+        this.minimumThreshold=minimumThreshold;
+        this.low=low;
+        this.occurredAt=occurredAt;
+    }
+
+    //Getters
+    public String getBranchId(){return branchId;}
+    public String getDrinkId(){return drinkId;}
+    public int getQuantity(){return quantity;}
+    public int getMinimumThreshold(){return minimumThreshold;}
+    public boolean isLow(){return low;}
+    public LocalDateTime getOccurredAt(){return occurredAt;}
+
+    @Override
+    public String toString(){
+        return (low?"LOW STOCK":"RESTOCKED")+": "+drinkId+" at "+branchId+". Qty: "+quantity+", Threshold: "+minimumThreshold+" ("+occurredAt+")";
+    }
+}
@@ -14,6 +14,7 @@ public class Order implements Serializable {
     private LocalDateTime orderTimestamp;
     private List<OrderItem> items;
     private double totalAmount;
+    private String idempotencyKey; // Client-supplied key for safe placeOrder retries; null if none was given
 
     public Order(String orderId,String customerId,String branchId,LocalDateTime orderTimestamp, List<OrderItem> items,double totalAmount){
         this.orderId=orderId;
@@ -35,12 +36,16 @@ public class Order implements Serializable {
     public LocalDateTime getOrderTimestamp(){return orderTimestamp;}
     public List<OrderItem> getItems(){return Collections.unmodifiableList(items);}
     public double getTotalAmount(){return totalAmount;}
+    public String getIdempotencyKey(){return idempotencyKey;}
 
 
     // Setter for items (e.g., when DAO populates them after fetching the order header)
     public void setItems(List<OrderItem> items) {
         this.items = items != null ? new ArrayList<>(items) : new ArrayList<>();
     }
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
 
     @Override
     public String toString() {
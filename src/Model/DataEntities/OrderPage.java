@@ -0,0 +1,27 @@
+package Model.DataEntities;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+// One page of order history, oldest first. Pass nextCursor back to get the page after it; null means this was the last page.
+public class OrderPage implements Serializable {
+    private static final long serialVersionUID=108L;
+    private final List<Order> orders;
+    private final String nextCursor;
+
+    public OrderPage(List<Order> orders,String nextCursor){
+        this.orders=orders;
+        this.nextCursor=nextCursor;
+    }
+
+    //Getters
+    public List<Order> getOrders(){return Collections.unmodifiableList(orders);}
+    public String getNextCursor(){return nextCursor;}
+    public boolean hasMore(){return nextCursor!=null;}
+
+    @Override
+    public String toString(){
+        return orders.size()+" order(s)"+(hasMore()?", more available":"");
+    }
+}
@@ -0,0 +1,30 @@
+package Model.DataEntities;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// One order in a bulk upload (IOrderService.placeOrders), same fields as a single placeOrder call
+public class OrderRequest implements Serializable {
+    private static final long serialVersionUID=106L;
+    private final String customerId;
+    private final String branchId;
+    private final Map<String,Integer> items; // DrinkID -> Quantity
+
+    public OrderRequest(String customerId,String branchId,Map<String,Integer> items){
+        this.customerId=customerId;
+        this.branchId=branchId;
+        this.items=items!=null? new LinkedHashMap<>(items):new LinkedHashMap<>();
+    }
+
+    //Getters
+    public String getCustomerId(){return customerId;}
+    public String getBranchId(){return branchId;}
+    public Map<String,Integer> getItems(){return Collections.unmodifiableMap(items);}
+
+    @Override
+    public String toString(){
+        return "OrderRequest{customer="+customerId+", branch="+branchId+", items="+items+"}";
+    }
+}
@@ -0,0 +1,28 @@
+package Model.DataEntities;
+
+import java.io.Serializable;
+
+// Outcome of one OrderRequest in a bulk upload: the placed order, or why it was rejected
+public class OrderResult implements Serializable {
+    private static final long serialVersionUID=107L;
+    private final Order order;
+    private final String errorMessage;
+
+    private OrderResult(Order order,String errorMessage){
+        this.order=order;
+        this.errorMessage=errorMessage;
+    }
+
+    public static OrderResult success(Order order){return new OrderResult(order,null);}
+    public static OrderResult failure(String errorMessage){return new OrderResult(null,errorMessage);}
+
+    //Getters
+    public boolean isSuccess(){return order!=null;}
+    public Order getOrder(){return order;}
+    public String getErrorMessage(){return errorMessage;}
+
+    @Override
+    public String toString(){
+        return isSuccess()? "OK "+order.getOrderId(): "FAILED: "+errorMessage;
+    }
+}
@@ -0,0 +1,33 @@
+package Model.DataEntities;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Map;
+
+// Stock held for a cart until it is checked out, released, or expiresAt passes. items: DrinkID -> Quantity held
+public class StockReservation implements Serializable {
+    private static final long serialVersionUID=109L;
+    private final String reservationId;
+    private final String branchId;
+    private final Map<String,Integer> items;
+    private final LocalDateTime expiresAt;
+
+    public StockReservation(String reservationId,String branchId,Map<String,Integer> items,LocalDateTime expiresAt){
+        this.reservationId=reservationId;
+        this.branchId=branchId;
+        this.items=items;
+        this.expiresAt=expiresAt;
+    }
+
+    //Getters
+    public String getReservationId(){return reservationId;}
+    public String getBranchId(){return branchId;}
+    public Map<String,Integer> getItems(){return Collections.unmodifiableMap(items);}
+    public LocalDateTime getExpiresAt(){return expiresAt;}
+
+    @Override
+    public String toString(){
+        return "Reservation "+reservationId+" at "+branchId+": "+items+" until "+expiresAt;
+    }
+}
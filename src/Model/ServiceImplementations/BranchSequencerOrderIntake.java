@@ -0,0 +1,245 @@
+package Model.ServiceImplementations;
+
+import Model.DataEntities.Order;
+import Model.DataEntities.OrderItem;
+import Model.DataEntities.OrderRequest;
+import Model.DataEntities.StockItem;
+import Model.ServiceImplementations.OrderGroupCommit.Pending;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// orders.intakeMode=sequencer: every branch gets one thread that owns a copy of the branch's stock. Callers append their order
+// to the branch's lock-free inbox and wait; the sequencer checks each order against its copy (less what carts hold) strictly in
+// arrival order, answers the ones that do not fit at once, and writes the accepted ones as one batch: a guarded decrement of the
+// totals plus the order rows, with no SELECT ... FOR UPDATE ahead of it. The copy is reloaded from the database when it may be wrong:
+//  - a batch failed (the guard found the stock lowered behind its back, or an order broke it): reload, then split and re-check;
+//  - an order does not fit (stock may have been added behind its back): reload once per group and check that order again;
+//  - the stock service changed the branch's stock outside the sequencer (levels, thresholds, transfers, bulk and reserved orders).
+class BranchSequencerOrderIntake implements OrderIntake {
+
+    @FunctionalInterface
+    interface BatchWriter {
+        // One transaction: take the totals from the branch's stock and save the orders. Throws, after rolling back, if anything failed.
+        void write(String branchId, Map<String, Integer> taken, List<Order> orders) throws Exception;
+    }
+
+    private final class Sequencer implements Runnable {
+        final String branchId;
+        final ConcurrentLinkedQueue<Pending> inbox = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger(); // ConcurrentLinkedQueue.size() walks the whole queue
+        final Thread thread;
+        volatile boolean stale = true; // Loaded before the first group
+        volatile boolean dead; // The thread has stopped; submit() then starts another for the branch
+        Map<String, StockItem> stock; // Drink ID -> row; only touched by the sequencer thread
+
+        Sequencer(String branchId) {
+            this.branchId = branchId;
+            thread = new Thread(this, "order-sequencer-" + branchId);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                loop();
+            } finally {
+                dead = true; // Whatever stopped us, nobody is left waiting on an order we will never look at
+                sequencers.remove(branchId, this);
+                failQueued(this, running ? "Order sequencer for " + branchId + " stopped; please try again." : "Order intake shut down before the order was committed.");
+            }
+        }
+
+        private void loop() {
+            List<Pending> group = new ArrayList<>(maxBatch);
+            while (running || !inbox.isEmpty()) {
+                Pending next;
+                while (group.size() < maxBatch && (next = inbox.poll()) != null) {
+                    group.add(next);
+                }
+                if (group.isEmpty()) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS); // submit() unparks us; the timeout only matters at shutdown
+                    continue;
+                }
+                queued.addAndGet(-group.size());
+                try {
+                    if (stale) {
+                        reload();
+                    }
+                    process(group);
+                } catch (Throwable e) {
+                    stale = true;
+                    for (Pending pending : group) {
+                        pending.result.completeExceptionally(e); // No-op for the ones already answered
+                    }
+                    System.err.println("Order sequencer error at " + branchId + ": " + e);
+                    if (e instanceof Error) {
+                        throw (Error) e; // The thread dies, failing what is queued; the next order starts a fresh one
+                    }
+                } finally {
+                    group.clear();
+                }
+            }
+        }
+
+        private void reload() throws Exception {
+            stale = false; // Cleared first: a change reported while we read is read again next time
+            stock = stockService.loadBranchStock(branchId);
+        }
+
+        // Checks the orders in order against the copy, taking what each accepted one needs, then writes those in one batch
+        private void process(List<Pending> group) throws Exception {
+            List<Pending> accepted = new ArrayList<>();
+            Map<String, Integer> taken = new TreeMap<>();
+            boolean reloaded = false;
+            for (Pending pending : group) {
+                Map<String, Integer> lines = lines(pending.order);
+                String failure = check(pending.order, lines);
+                if (failure != null && !reloaded) {
+                    reload();
+                    reloaded = true;
+                    for (Map.Entry<String, Integer> line : taken.entrySet()) { // Re-take what this group has accepted so far
+                        StockItem row = stock.computeIfAbsent(line.getKey(), drinkId -> new StockItem(branchId, drinkId, 0, 0));
+                        row.setQuantity(row.getQuantity() - line.getValue()); // If that goes below zero the batch guard refuses it, and we split
+                    }
+                    failure = check(pending.order, lines);
+                }
+                if (failure != null) {
+                    pending.result.completeExceptionally(new Exception(failure));
+                    continue;
+                }
+                for (Map.Entry<String, Integer> line : lines.entrySet()) {
+                    StockItem row = stock.get(line.getKey());
+                    row.setQuantity(row.getQuantity() - line.getValue());
+                    taken.merge(line.getKey(), line.getValue(), Integer::sum);
+                }
+                accepted.add(pending);
+            }
+            if (accepted.isEmpty()) {
+                return;
+            }
+            List<Order> orders = new ArrayList<>(accepted.size());
+            for (Pending pending : accepted) {
+                orders.add(pending.order);
+            }
+            try {
+                writer.write(branchId, taken, orders);
+            } catch (Exception e) {
+                reload(); // Rolled back, so the database is right and the copy is not
+                if (accepted.size() == 1) {
+                    String failure = check(accepted.get(0).order, lines(accepted.get(0).order));
+                    accepted.get(0).result.completeExceptionally(failure != null ? new Exception(failure) : e);
+                    return;
+                }
+                // As in OrderGroupCommit: halve until the order that broke the batch is alone, re-checking against the reloaded stock
+                int middle = accepted.size() / 2;
+                process(accepted.subList(0, middle));
+                process(accepted.subList(middle, accepted.size()));
+                return;
+            }
+            for (Pending pending : accepted) {
+                pending.result.complete(pending.order);
+            }
+        }
+
+        // Why the order does not fit the copy, or null if it does
+        private String check(Order order, Map<String, Integer> lines) throws Exception {
+            Map<String, Integer> available = new HashMap<>();
+            for (String drinkId : lines.keySet()) {
+                StockItem row = stock.get(drinkId);
+                if (row != null) {
+                    available.put(drinkId, row.getQuantity() - stockService.held(branchId, drinkId)); // Stock held for carts is not for sale
+                }
+            }
+            return stockService.checkSale(new OrderRequest(order.getCustomerId(), branchId, lines), available);
+        }
+    }
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final StockServiceImplementation stockService;
+    private final BatchWriter writer;
+    private final int queueCapacity;
+    private final int maxBatch;
+    private final ConcurrentHashMap<String, Sequencer> sequencers = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+
+    BranchSequencerOrderIntake(StockServiceImplementation stockService, BatchWriter writer, int queueCapacity, int maxBatch) {
+        this.stockService = stockService;
+        this.writer = writer;
+        this.queueCapacity = queueCapacity;
+        this.maxBatch = maxBatch;
+        stockService.onStockChanged(branchId -> {
+            Sequencer sequencer = sequencers.get(branchId);
+            if (sequencer != null) {
+                sequencer.stale = true;
+            }
+        });
+    }
+
+    static BranchSequencerOrderIntake fromSystemProperties(StockServiceImplementation stockService, BatchWriter writer) {
+        return new BranchSequencerOrderIntake(stockService, writer,
+                Integer.getInteger("orders.sequencer.queueCapacity", 1024),
+                Integer.getInteger("orders.sequencer.maxBatch", 64));
+    }
+
+    private static Map<String, Integer> lines(Order order) {
+        Map<String, Integer> lines = new LinkedHashMap<>();
+        for (OrderItem item : order.getItems()) {
+            lines.merge(item.getDrinkId(), item.getQuantity(), Integer::sum);
+        }
+        return lines;
+    }
+
+    private static void failQueued(Sequencer sequencer, String reason) {
+        Pending stranded;
+        while ((stranded = sequencer.inbox.poll()) != null) {
+            stranded.result.completeExceptionally(new Exception(reason));
+        }
+    }
+
+    // The branch must already have been validated: one thread is started per distinct branch ID
+    @Override
+    public Order submit(Order order) throws Exception {
+        if (!running) {
+            throw new Exception("Order intake is shutting down.");
+        }
+        Sequencer sequencer = sequencers.computeIfAbsent(order.getBranchId(), Sequencer::new);
+        if (sequencer.queued.incrementAndGet() > queueCapacity) {
+            sequencer.queued.decrementAndGet();
+            throw new Exception("Order intake for " + order.getBranchId() + " is overloaded (" + queueCapacity + " orders queued); try again.");
+        }
+        Pending pending = new Pending(order);
+        sequencer.inbox.offer(pending);
+        LockSupport.unpark(sequencer.thread);
+        if (!running || sequencer.dead) { // It may have drained its inbox for the last time before our order landed
+            failQueued(sequencer, running ? "Order sequencer for " + order.getBranchId() + " stopped; please try again." : "Order intake shut down before the order was committed.");
+        }
+        return pending.await();
+    }
+
+    @Override
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (Sequencer sequencer : sequencers.values()) {
+            LockSupport.unpark(sequencer.thread);
+            try {
+                sequencer.thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            failQueued(sequencer, "Order intake shut down before the order was committed."); // Raced with shutdown, or the sequencer did not finish in time
+        }
+    }
+}
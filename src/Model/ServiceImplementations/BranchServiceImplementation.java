@@ -12,9 +12,11 @@ import java.util.List;
 
 public class BranchServiceImplementation extends UnicastRemoteObject implements IBranchService{
     private final IBranchDAO branchDAO;
-    public BranchServiceImplementation(IBranchDAO bDAO) throws RemoteException{
+    private final ReferenceDataCache referenceData;
+    public BranchServiceImplementation(IBranchDAO bDAO, ReferenceDataCache referenceData) throws RemoteException{
         super();
         this.branchDAO=bDAO;
+        this.referenceData=referenceData;
     }
     @Override
     public void addBranch(Branch branch) throws RemoteException, Exception {
@@ -26,6 +28,7 @@ public class BranchServiceImplementation extends UnicastRemoteObject implements
                 throw new Exception("Branch ID "+branch.getId()+" exists.");
             }
             branchDAO.add(branch);
+            referenceData.invalidateBranch(branch.getId());
             System.out.println("Branch added: "+branch.getName());
         }catch(SQLException e){
             throw new RemoteException("DB error adding branch",e);
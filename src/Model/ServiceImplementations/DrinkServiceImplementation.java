@@ -5,11 +5,10 @@ import Model.DataAccessObjectInterfaces.IStockItemDAO;
 import Model.DataEntities.Drink;
 import Model.DataEntities.StockItem;
 import Model.ServiceInterfaces.IDrinkService;
-import Model.UtilitiesandServerEntryPoint.DatabaseManager;
+import Model.UtilitiesandServerEntryPoint.TransactionRunner;
 
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
-import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.EmptyStackException;
 import java.util.List;
@@ -17,11 +16,13 @@ import java.util.List;
 public class DrinkServiceImplementation extends UnicastRemoteObject implements IDrinkService {
     private final IDrinkDAO drinkDAO;
     private final IStockItemDAO stockItemDAO;
+    private final ReferenceDataCache referenceData;
     public static final String HQ_BRANCH_ID_CONST="Nairobi";//Central definition
-    public DrinkServiceImplementation(IDrinkDAO dDAO, IStockItemDAO siDAO) throws RemoteException{
+    public DrinkServiceImplementation(IDrinkDAO dDAO, IStockItemDAO siDAO, ReferenceDataCache referenceData) throws RemoteException{
         super();
         this.drinkDAO=dDAO;
         this.stockItemDAO=siDAO;
+        this.referenceData=referenceData;
     }
 
     @Override
@@ -29,30 +30,21 @@ public class DrinkServiceImplementation extends UnicastRemoteObject implements I
         if(drink==null||drink.getId()==null||drink.getId().isEmpty()){
             throw new IllegalArgumentException("Drink/ID required.");
         }
-        Connection conn=null;
         try{
-            conn= DatabaseManager.getConnection();
-            conn.setAutoCommit(false);
-            if(drinkDAO.findById(drink.getId(),conn).isPresent()){
-                throw new Exception("Drink ID "+drink.getId()+" exists");
-            }
-            drinkDAO.add(drink,conn);
-            if(drink.getInitialStock()>0) {//Add initial stock to HQ
-                stockItemDAO.saveOrUpdate(new StockItem(HQ_BRANCH_ID_CONST, drink.getId(), drink.getInitialStock(), 0), conn);
-            }
-            conn.commit();
+            TransactionRunner.run("addDrink",conn->{
+                if(drinkDAO.findById(drink.getId(),conn).isPresent()){
+                    throw new Exception("Drink ID "+drink.getId()+" exists");
+                }
+                drinkDAO.add(drink,conn);
+                if(drink.getInitialStock()>0) {//Add initial stock to HQ
+                    stockItemDAO.saveOrUpdate(new StockItem(HQ_BRANCH_ID_CONST, drink.getId(), drink.getInitialStock(), 0), conn);
+                }
+                return null;
+            });
+            referenceData.invalidateDrink(drink.getId());
             System.out.println("Drink added: " +drink.getName());
         }catch(SQLException e){
             throw new RemoteException("DB error finding drink",e);
-        }finally {
-            if(conn!=null){
-                try{
-                    conn.setAutoCommit(true);
-                    conn.close();
-                }catch (SQLException ex){
-
-                }
-            }
         }
     }
 
@@ -84,6 +76,7 @@ public class DrinkServiceImplementation extends UnicastRemoteObject implements I
                 throw new Exception("Drink ID "+drink.getName()+" not found for update.");
             }
             drinkDAO.update(drink);
+            referenceData.invalidateDrink(drink.getId());
             System.out.println("Drink updated: "+drink.getName());
         }catch (SQLException e){
             throw new RemoteException("DB error updating drink.",e);
@@ -0,0 +1,120 @@
+package Model.ServiceImplementations;
+
+import Model.DataEntities.Order;
+import Model.ServiceImplementations.OrderGroupCommit.Pending;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// orders.intakeMode=groupCommit: callers queue their priced order and wait while a single committer thread writes
+// several orders per transaction, so one commit (and one fsync on the MySQL side) is shared by the whole group.
+class GroupCommitOrderIntake implements OrderIntake {
+
+    private final GroupWriter writer;
+    private final BlockingQueue<Pending> queue;
+    private final int maxBatch;
+    private final long maxWaitNanos;
+    private final long offerTimeoutMillis;
+    private final Thread committer;
+    private volatile boolean running = true;
+
+    GroupCommitOrderIntake(GroupWriter writer, int queueCapacity, int maxBatch, long maxWaitMillis, long offerTimeoutMillis) {
+        this.writer = writer;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatch = maxBatch;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.committer = new Thread(this::run, "order-group-committer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    static GroupCommitOrderIntake fromSystemProperties(GroupWriter writer) {
+        return new GroupCommitOrderIntake(writer,
+                Integer.getInteger("orders.groupCommit.queueCapacity", 1024),
+                Integer.getInteger("orders.groupCommit.maxBatch", 32),
+                Long.getLong("orders.groupCommit.maxWaitMs", 5L),
+                Long.getLong("orders.groupCommit.offerTimeoutMs", 2_000L));
+    }
+
+    @Override
+    public Order submit(Order order) throws Exception {
+        if (!running) {
+            throw new Exception("Order intake is shutting down.");
+        }
+        Pending pending = new Pending(order);
+        if (!queue.offer(pending, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw new Exception("Order intake is overloaded (" + queue.size() + " orders queued); try again.");
+        }
+        if (!running) { // The committer may have drained the queue for the last time before our order landed
+            failQueued();
+        }
+        return pending.await();
+    }
+
+    private void run() {
+        try {
+            loop();
+        } finally {
+            running = false; // Whatever stopped us, nobody is left waiting on an order we will never look at
+            failQueued();
+        }
+    }
+
+    private void loop() {
+        List<Pending> group = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                // Gather more orders until the group is full or the first one has waited maxWait
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (group.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+                OrderGroupCommit.commit(writer, group);
+            } catch (InterruptedException e) {
+                running = false; // Drain what is queued, then stop
+                if (!group.isEmpty()) {
+                    OrderGroupCommit.commit(writer, group);
+                }
+            } catch (Throwable e) {
+                for (Pending pending : group) {
+                    pending.result.completeExceptionally(e); // No-op for the ones already answered
+                }
+                System.err.println("Order group committer error: " + e);
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    @Override
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        try {
+            committer.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failQueued(); // Raced with shutdown, or the committer did not finish in time
+    }
+
+    private void failQueued() {
+        Pending stranded;
+        while ((stranded = queue.poll()) != null) {
+            stranded.result.completeExceptionally(new Exception("Order intake shut down before the order was committed."));
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package Model.ServiceImplementations;
+
+import Model.DataEntities.Order;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Recently placed orders by idempotency key, so a client retry is answered without a DB round trip.
+// Bounded LRU; a key that has fallen out is still caught by the unique index on orders.idempotency_key.
+class IdempotencyCache {
+    private final Map<String, Order> orders;
+
+    IdempotencyCache(int maxEntries) {
+        this.orders = new LinkedHashMap<String, Order>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Order> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    synchronized Order get(String idempotencyKey) {
+        return orders.get(idempotencyKey);
+    }
+
+    synchronized void put(String idempotencyKey, Order order) {
+        orders.put(idempotencyKey, order);
+    }
+}
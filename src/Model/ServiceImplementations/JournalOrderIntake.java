@@ -0,0 +1,241 @@
+package Model.ServiceImplementations;
+
+import Model.DataAccessObjectInterfaces.IOrderDAO;
+import Model.DataEntities.Order;
+import Model.DataEntities.OrderItem;
+import Model.UtilitiesandServerEntryPoint.MetricsRegistry;
+import Model.UtilitiesandServerEntryPoint.OrderJournal;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// orders.intakeMode=journal: placeOrder returns once the order is fsynced to the local journal, and a replayer thread writes
+// journalled orders to the database, oldest first, through the normal order transaction. Tills keep selling through a database
+// brown-out. The price: stock is only checked at replay, so an order the stock cannot cover is refused after it was acknowledged;
+// such orders are appended to <journal>.rejected for someone to follow up. Replay is idempotent: an order that already reached
+// the database before a crash (its checkpoint was not yet written) fails on the orders primary key and is skipped.
+// An order is acknowledged before the database sees it, so the idempotency-key index cannot turn a client's retry away in time:
+// submit answers a retry with the order its key is pending under in the journal, or already has in the database. If the database
+// cannot be asked, the retry is journalled and replay skips it once the key turns out to be taken.
+class JournalOrderIntake implements OrderIntake, OrderJournalMXBean {
+
+    @FunctionalInterface
+    interface PlacedOrders {
+        // The order in the database under this idempotency key, or null if there is none
+        Order find(String idempotencyKey) throws Exception;
+    }
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MIN_RETRY_MILLIS = 100;
+    private static final long MAX_RETRY_MILLIS = 5_000;
+
+    private final OrderJournal journal;
+    private final GroupWriter writer;
+    private final PlacedOrders placedOrders;
+    private final ConcurrentHashMap<String, Order> pendingKeys = new ConcurrentHashMap<>(); // Idempotency key -> order journalled, not yet replayed
+    private final int maxBatch;
+    private final Path rejectedLog;
+    private final Thread replayer;
+    private volatile boolean running = true;
+    private volatile long oldestPendingMillis; // Placement time of the oldest order being replayed, 0 when caught up
+
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder replayFailures = new LongAdder();
+
+    JournalOrderIntake(OrderJournal journal, GroupWriter writer, PlacedOrders placedOrders, int maxBatch) throws IOException {
+        this.journal = journal;
+        this.writer = writer;
+        this.placedOrders = placedOrders;
+        this.maxBatch = maxBatch;
+        for (Order order : journal.readPending(Integer.MAX_VALUE).getOrders()) { // Left over from the last run
+            if (order.getIdempotencyKey() != null) {
+                pendingKeys.put(order.getIdempotencyKey(), order);
+            }
+        }
+        this.rejectedLog = Paths.get(journal.getPath() + ".rejected");
+        this.replayer = new Thread(this::run, "order-journal-replayer");
+        replayer.setDaemon(true);
+        replayer.start();
+        MetricsRegistry.register("type=OrderJournal", this);
+    }
+
+    static JournalOrderIntake fromSystemProperties(GroupWriter writer, PlacedOrders placedOrders) throws IOException {
+        long sizeMb = Long.getLong("orders.journal.sizeMb", 64L);
+        if (sizeMb < 1 || sizeMb > 2047) {
+            throw new IllegalArgumentException("orders.journal.sizeMb must be between 1 and 2047 (one memory-mapped file), was " + sizeMb);
+        }
+        OrderJournal journal = OrderJournal.open(Paths.get(System.getProperty("orders.journal.path", "orders.journal")), sizeMb * 1024 * 1024);
+        return new JournalOrderIntake(journal, writer, placedOrders, Integer.getInteger("orders.journal.replayBatch", 64));
+    }
+
+    // Returns the order as journalled or, for a retry, the order placed earlier under its idempotency key
+    @Override
+    public Order submit(Order order) throws Exception {
+        if (!running) {
+            throw new Exception("Order intake is shutting down.");
+        }
+        String key = order.getIdempotencyKey();
+        if (key != null) {
+            Order earlier = pendingKeys.putIfAbsent(key, order);
+            if (earlier != null) {
+                return earlier;
+            }
+            try {
+                earlier = placedOrders.find(key);
+            } catch (Exception e) {
+                System.err.println("Warn: could not check idempotency key " + key + " against the database (" + e.getMessage() + "); replay will.");
+            }
+            if (earlier != null) {
+                pendingKeys.remove(key, order);
+                return earlier;
+            }
+        }
+        try {
+            journal.append(order);
+        } catch (IOException e) {
+            if (key != null) {
+                pendingKeys.remove(key, order);
+            }
+            throw e;
+        }
+        LockSupport.unpark(replayer);
+        return order;
+    }
+
+    private void run() {
+        long retryMillis = MIN_RETRY_MILLIS;
+        while (running || journal.getPendingOrders() > 0) {
+            try {
+                OrderJournal.Batch batch = journal.readPending(maxBatch);
+                if (batch.getOrders().isEmpty()) {
+                    oldestPendingMillis = 0;
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    continue;
+                }
+                oldestPendingMillis = batch.getOrders().get(0).getOrderTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                replay(batch.getOrders());
+                journal.checkpoint(batch);
+                for (Order order : batch.getOrders()) { // In the database (or refused) now, so a retry is answered from there
+                    if (order.getIdempotencyKey() != null) {
+                        pendingKeys.computeIfPresent(order.getIdempotencyKey(), (key, pending) -> pending.getOrderId().equals(order.getOrderId()) ? null : pending);
+                    }
+                }
+                retryMillis = MIN_RETRY_MILLIS;
+            } catch (Exception e) {
+                // The database is unavailable (or the journal unreadable): keep everything and try the same batch again
+                replayFailures.increment();
+                System.err.println("Warn: order journal replay failed (" + e.getMessage() + "); retrying in " + retryMillis + "ms");
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(retryMillis));
+                retryMillis = Math.min(MAX_RETRY_MILLIS, retryMillis * 2);
+            }
+        }
+    }
+
+    // Returns once every order is in the database or rejected; throws, having changed nothing for good, if the database is unavailable.
+    // A group that fails permanently is split until the offending order is alone, like the group-commit intake does.
+    private void replay(List<Order> orders) throws Exception {
+        List<String> failures;
+        try {
+            failures = writer.write(orders);
+        } catch (Exception e) {
+            if (!OrderGroupCommit.isPermanent(e)) {
+                throw e;
+            }
+            if (orders.size() == 1) {
+                if (isDuplicateOrderId(e)) {
+                    System.out.println("Order " + orders.get(0).getOrderId() + " was already in the database; skipping it.");
+                } else if (isDuplicateIdempotencyKey(e)) {
+                    System.out.println("Order " + orders.get(0).getOrderId() + " is a retry of an order already in the database (idempotency key "
+                            + orders.get(0).getIdempotencyKey() + "); skipping it.");
+                } else {
+                    reject(orders.get(0), e.getMessage());
+                }
+                return;
+            }
+            int middle = orders.size() / 2;
+            replay(orders.subList(0, middle));
+            replay(orders.subList(middle, orders.size()));
+            return;
+        }
+        for (int i = 0; i < orders.size(); i++) {
+            if (failures.get(i) == null) {
+                replayed.increment();
+            } else {
+                reject(orders.get(i), failures.get(i));
+            }
+        }
+    }
+
+    private static boolean isDuplicateOrderId(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException && ((SQLException) t).getErrorCode() == 1062
+                    && String.valueOf(t.getMessage()).contains("PRIMARY")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isDuplicateIdempotencyKey(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException && ((SQLException) t).getErrorCode() == 1062
+                    && String.valueOf(t.getMessage()).contains(IOrderDAO.IDEMPOTENCY_KEY_INDEX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void reject(Order order, String reason) {
+        rejected.increment();
+        StringBuilder items = new StringBuilder();
+        for (OrderItem item : order.getItems()) {
+            items.append(items.length() == 0 ? "" : ";").append(item.getDrinkId()).append(':').append(item.getQuantity());
+        }
+        String line = String.join(",", LocalDateTime.now().toString(), order.getOrderId(), order.getCustomerId(), order.getBranchId(),
+                items.toString(), String.valueOf(reason).replace(',', ' ').replace('\n', ' ')) + System.lineSeparator();
+        System.err.println("Journalled order " + order.getOrderId() + " was refused by the database: " + reason);
+        try {
+            Files.write(rejectedLog, line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Warn: could not record rejected order " + order.getOrderId() + " in " + rejectedLog + ": " + e.getMessage());
+        }
+    }
+
+    // Stops taking orders and gives the replayer the timeout to catch up; whatever is left is replayed at the next start
+    @Override
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        LockSupport.unpark(replayer);
+        try {
+            replayer.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (journal.getPendingOrders() > 0) {
+            System.out.println("Order journal: " + journal.getPendingOrders() + " order(s) will be written to the database at the next start.");
+        }
+    }
+
+    @Override public long getPendingOrders() { return journal.getPendingOrders(); }
+    @Override public long getPendingBytes() { return journal.getPendingBytes(); }
+    @Override public long getUsedBytes() { return journal.getUsedBytes(); }
+    @Override public long getCapacityBytes() { return journal.getCapacityBytes(); }
+    @Override public long getReplayLagMillis() { long oldest = oldestPendingMillis; return oldest == 0 ? 0 : Math.max(0, System.currentTimeMillis() - oldest); }
+    @Override public long getReplayedOrders() { return replayed.sum(); }
+    @Override public long getRejectedOrders() { return rejected.sum(); }
+    @Override public long getReplayFailures() { return replayFailures.sum(); }
+}
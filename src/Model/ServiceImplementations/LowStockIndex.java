@@ -0,0 +1,118 @@
+package Model.ServiceImplementations;
+
+import Model.DataEntities.LowStockEvent;
+import Model.DataEntities.StockItem;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// The stock rows below their minimum threshold, kept up to date as stock changes so that checks cost the size of the answer instead
+// of a scan, and a row crossing its threshold either way alerts listeners as it happens. Loaded once from the database (the low rows
+// only); after that every committed sale, transfer and level or threshold change reports the rows it touched as it left them, with
+// a stamp taken after the write. Rows are still locked then, so stamp order
+// is the order the row changed in, and a report that arrives after a newer one for the same row is dropped. (With stock.engine=ledger
+// sales take no row locks: their levels and stamp come from the ledger's compare-and-set, and the rare two sales of one row racing
+// between the two can be reported out of order, which the row's next change puts right.) Changes made by other servers sharing the
+// database are not seen.
+class LowStockIndex {
+    private static final class Level {
+        final StockItem row;
+        final long stamp;
+
+        Level(StockItem row, long stamp) {
+            this.row = row;
+            this.stamp = stamp;
+        }
+    }
+
+    private static final class Outbox {
+        final ConcurrentLinkedQueue<LowStockEvent> events = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean sending = new AtomicBoolean();
+    }
+
+    private static final Comparator<List<String>> BY_BRANCH_THEN_DRINK =
+            Comparator.comparing((List<String> key) -> key.get(0)).thenComparing(key -> key.get(1));
+
+    private final ConcurrentHashMap<List<String>, Level> levels = new ConcurrentHashMap<>(); // [branch, drink] -> last report
+    private final ConcurrentSkipListMap<List<String>, StockItem> low = new ConcurrentSkipListMap<>(BY_BRANCH_THEN_DRINK); // Changed only inside levels.compute
+    private final ConcurrentHashMap<List<String>, Outbox> outboxes = new ConcurrentHashMap<>(); // Rows that have crossed at least once
+    private final AtomicLong stamps = new AtomicLong();
+    private final Consumer<LowStockEvent> onCrossing;
+
+    LowStockIndex(Consumer<LowStockEvent> onCrossing) {
+        this.onCrossing = onCrossing;
+    }
+
+    // rows: every low stock row, read before any change is reported
+    void load(List<StockItem> rows) {
+        for (StockItem row : rows) {
+            List<String> key = List.of(row.getBranchId(), row.getDrinkId());
+            levels.put(key, new Level(row, 0));
+            low.put(key, row);
+        }
+    }
+
+    long stamp() {
+        return stamps.incrementAndGet();
+    }
+
+    void update(StockItem row, long stamp) {
+        List<String> key = List.of(row.getBranchId(), row.getDrinkId());
+        Outbox[] crossed = new Outbox[1];
+        levels.compute(key, (k, last) -> {
+            if (last != null && last.stamp > stamp) {
+                return last;
+            }
+            boolean wasLow = low.containsKey(k);
+            boolean nowLow = isLow(row);
+            if (nowLow) {
+                low.put(k, row);
+            } else {
+                low.remove(k);
+            }
+            if (wasLow != nowLow) {// Queued while the row is held, so its events are in the order it changed in; sent once it is let go
+                crossed[0] = outboxes.computeIfAbsent(k, x -> new Outbox());
+                crossed[0].events.add(new LowStockEvent(row.getBranchId(), row.getDrinkId(), row.getQuantity(), row.getMinimumThreshold(), nowLow, LocalDateTime.now()));
+            }
+            return new Level(row, stamp);
+        });
+        if (crossed[0] != null) {
+            send(crossed[0]);
+        }
+    }
+
+    // By branch, then drink; branchId null for every branch. Costs the size of the answer
+    List<StockItem> lowRows(String branchId) {
+        if (branchId == null) {
+            return new ArrayList<>(low.values());
+        }
+        return new ArrayList<>(low.subMap(List.of(branchId, ""), List.of(branchId + "\0", "")).values());
+    }
+
+    // One thread at a time sends a row's events, in queue order; one that finds another already sending leaves its event to it
+    private void send(Outbox outbox) {
+        while (!outbox.events.isEmpty() && outbox.sending.compareAndSet(false, true)) {
+            try {
+                LowStockEvent crossing;
+                while ((crossing = outbox.events.poll()) != null) {
+                    System.out.println(crossing);
+                    onCrossing.accept(crossing);
+                }
+            } finally {
+                outbox.sending.set(false);
+            }
+        }
+    }
+
+    private static boolean isLow(StockItem row) {
+        return row.getQuantity() < row.getMinimumThreshold();
+    }
+}
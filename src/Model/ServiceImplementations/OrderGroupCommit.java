@@ -0,0 +1,83 @@
+package Model.ServiceImplementations;
+
+import Model.DataEntities.Order;
+import Model.ServiceImplementations.OrderIntake.GroupWriter;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+// Writes a group of orders in one transaction and, when that fails because of one of them, splits the group to find it.
+// Used by placeOrders and the group-commit intake; the order sequencer and the journal replay split their own batches the same way.
+final class OrderGroupCommit {
+
+    // An order waiting for its group to commit
+    static final class Pending {
+        final Order order;
+        final CompletableFuture<Order> result = new CompletableFuture<>();
+
+        Pending(Order order) {
+            this.order = order;
+        }
+
+        Order await() throws Exception {
+            try {
+                return result.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : new Exception(cause);
+            }
+        }
+    }
+
+    private OrderGroupCommit() {
+    }
+
+    // A transaction that failed for a reason one order can cause (a constraint or business error) says nothing about which order
+    // it was, so split the group and retry each half until the bad order is alone; the others still commit, at the cost of about
+    // 2*log2(group size) extra transactions. Any other failure (the database is down, a timeout) would fail every half the same way,
+    // so the whole group fails at once.
+    static void commit(GroupWriter writer, List<Pending> group) {
+        List<Order> orders = new ArrayList<>(group.size());
+        for (Pending pending : group) {
+            orders.add(pending.order);
+        }
+        try {
+            List<String> failures = writer.write(orders);
+            for (int i = 0; i < group.size(); i++) {
+                if (failures.get(i) == null) {
+                    group.get(i).result.complete(group.get(i).order);
+                } else {
+                    group.get(i).result.completeExceptionally(new Exception(failures.get(i)));
+                }
+            }
+        } catch (Exception e) {
+            if (group.size() == 1 || !isPermanent(e)) {
+                for (Pending pending : group) {
+                    pending.result.completeExceptionally(e);
+                }
+                return;
+            }
+            int middle = group.size() / 2;
+            commit(writer, group.subList(0, middle));
+            commit(writer, group.subList(middle, group.size()));
+        }
+    }
+
+    // Integrity-constraint errors and business errors will fail the same way every time; anything else SQL is worth retrying
+    static boolean isPermanent(Throwable e) {
+        boolean sawSqlError = false;
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException) {
+                sawSqlError = true;
+                String state = ((SQLException) t).getSQLState();
+                if (state != null && state.startsWith("23")) {
+                    return true;
+                }
+            }
+        }
+        return !sawSqlError;
+    }
+}
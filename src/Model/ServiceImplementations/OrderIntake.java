@@ -0,0 +1,21 @@
+package Model.ServiceImplementations;
+
+import Model.DataEntities.Order;
+
+import java.util.List;
+
+// How placeOrder hands a validated, priced order to the database when orders.intakeMode is not "direct"
+interface OrderIntake {
+
+    @FunctionalInterface
+    interface GroupWriter {
+        // One transaction for all orders; per order null if committed, else why it was rejected. Throws if nothing was committed.
+        List<String> write(List<Order> orders) throws Exception;
+    }
+
+    // Blocks until the order has been committed (returns it) or rejected (throws)
+    Order submit(Order order) throws Exception;
+
+    // Stops taking orders and waits for the queued ones to be committed
+    void shutdown(long timeoutMillis);
+}
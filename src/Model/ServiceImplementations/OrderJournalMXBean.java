@@ -0,0 +1,13 @@
+package Model.ServiceImplementations;
+
+// JMX view of the order journal (orders.intakeMode=journal): how far the database is behind the tills
+public interface OrderJournalMXBean {
+    long getPendingOrders();     // Acknowledged but not yet in the database
+    long getPendingBytes();
+    long getUsedBytes();         // Header plus pending records; new orders are refused once the next one does not fit
+    long getCapacityBytes();
+    long getReplayLagMillis();   // Age of the oldest order still waiting; 0 when caught up
+    long getReplayedOrders();
+    long getRejectedOrders();    // Acknowledged, then refused by the database (see the .rejected file)
+    long getReplayFailures();    // Replay attempts that hit an unavailable database and were retried
+}
@@ -0,0 +1,42 @@
+package Model.ServiceImplementations;
+
+import Model.DataEntities.Order;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// The (order_timestamp, order_id) of the last order on a page. Clients get it as an opaque URL-safe string and only pass it back.
+final class OrderPageCursor {
+    private static final String VERSION = "1";
+
+    final LocalDateTime timestamp;
+    final String orderId;
+
+    private OrderPageCursor(LocalDateTime timestamp, String orderId) {
+        this.timestamp = timestamp;
+        this.orderId = orderId;
+    }
+
+    static String after(Order lastOnPage) {
+        String raw = VERSION + "|" + lastOnPage.getOrderTimestamp() + "|" + lastOnPage.getOrderId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Null or empty means "from the start"
+    static OrderPageCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 3);
+            if (parts.length != 3 || !VERSION.equals(parts[0]) || parts[2].isEmpty()) {
+                throw new IllegalArgumentException("Invalid page cursor.");
+            }
+            return new OrderPageCursor(LocalDateTime.parse(parts[1]), parts[2]);
+        } catch (IllegalArgumentException | DateTimeParseException e) { // Not base64, or not one of ours
+            throw new IllegalArgumentException("Invalid page cursor.", e);
+        }
+    }
+}
@@ -1,100 +1,348 @@
 package Model.ServiceImplementations;
 
-import Model.DataAccessObjectInterfaces.IBranchDAO;
-import Model.DataAccessObjectInterfaces.IDrinkDAO;
 import Model.DataAccessObjectInterfaces.IOrderDAO;
+import Model.DataAccessObjectInterfaces.OrderFilter;
 import Model.DataEntities.Drink;
 import Model.DataEntities.Order;
 import Model.DataEntities.OrderItem;
+import Model.DataEntities.OrderPage;
+import Model.DataEntities.OrderRequest;
+import Model.DataEntities.OrderResult;
+import Model.DataEntities.StockReservation;
 import Model.ServiceInterfaces.IOrderService;
-import Model.ServiceInterfaces.IStockService;
-import Model.UtilitiesandServerEntryPoint.DatabaseManager;
+import Model.ServiceInterfaces.RemoteIterator;
+import Model.UtilitiesandServerEntryPoint.OrderIdGenerator;
+import Model.UtilitiesandServerEntryPoint.TransactionRunner;
 
+import java.io.IOException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
-import java.sql.Connection;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.stream.Stream;
 
 public class OrderServiceImplementation extends UnicastRemoteObject implements IOrderService {
+    private static final OrderIdGenerator ORDER_IDS = OrderIdGenerator.fromSystemProperties(); // Time-ordered, unique per server.nodeId
+
+    private static final int MAX_PAGE_SIZE = Integer.getInteger("orders.page.maxSize", 500); // Larger requests are cut to this
 
     private final IOrderDAO orderDAO;
-    private final IStockService stockService;
-    private final IDrinkDAO drinkDAO;
-    private final IBranchDAO branchDAO;
+    private final StockServiceImplementation stockService; // Not IStockService: reserved checkout uses its package-private calls
+    private final ReferenceDataCache referenceData;
+    private final OrderIntake intake; // Null in the default direct mode
+    private final IdempotencyCache idempotencyCache = new IdempotencyCache(Integer.getInteger("orders.idempotency.cacheSize", 10_000));
 
-    public OrderServiceImplementation(IOrderDAO orderDAO, IStockService stockService, IDrinkDAO drinkDAO, IBranchDAO branchDAO) throws RemoteException {
+    public OrderServiceImplementation(IOrderDAO orderDAO, StockServiceImplementation stockService, ReferenceDataCache referenceData) throws RemoteException {
         super();
         this.orderDAO = orderDAO;
         this.stockService = stockService;
-        this.drinkDAO = drinkDAO;
-        this.branchDAO = branchDAO;
+        this.referenceData = referenceData;
+        String intakeMode = System.getProperty("orders.intakeMode", "direct");
+        if ("groupCommit".equalsIgnoreCase(intakeMode)) {
+            this.intake = GroupCommitOrderIntake.fromSystemProperties(this::commitOrders);
+            System.out.println("Order intake: group commit.");
+        } else if ("sequencer".equalsIgnoreCase(intakeMode)) {
+            this.intake = BranchSequencerOrderIntake.fromSystemProperties(stockService, this::commitSequencedOrders);
+            System.out.println("Order intake: per-branch sequencer.");
+        } else if ("journal".equalsIgnoreCase(intakeMode)) {
+            try {
+                this.intake = JournalOrderIntake.fromSystemProperties(this::commitOrders, this::findPlacedOrder);
+            } catch (IOException e) {
+                throw new RemoteException("Could not open the order journal", e);
+            }
+            System.out.println("Order intake: local journal, replayed to the database in the background.");
+        } else {
+            this.intake = null;
+        }
     }
 
     @Override
     public Order placeOrder(String customerId, String branchId, Map<String, Integer> itemsToOrderMap) throws RemoteException, Exception {
+        return placeOrder(customerId, branchId, itemsToOrderMap, null);
+    }
+
+    @Override
+    public Order placeOrder(String customerId, String branchId, Map<String, Integer> itemsToOrderMap, String idempotencyKey) throws RemoteException, Exception {
+        if (idempotencyKey == null || idempotencyKey.isEmpty()) {
+            return placeNewOrder(customerId, branchId, itemsToOrderMap, null);
+        }
+        if (idempotencyKey.length() > 100) throw new IllegalArgumentException("Idempotency key is too long (max 100 characters).");
+        Order original = idempotencyCache.get(idempotencyKey);
+        if (original != null) {
+            return checkRetryMatches(original, customerId, branchId, itemsToOrderMap);
+        }
+        // No lookup before placing: a new key costs nothing extra, and a key we no longer cache trips the unique index
+        try {
+            Order placed = placeNewOrder(customerId, branchId, itemsToOrderMap, idempotencyKey);
+            idempotencyCache.put(idempotencyKey, placed);
+            return placed;
+        } catch (Exception e) {
+            if (!isDuplicateIdempotencyKey(e)) throw e;
+            // Already placed by an earlier attempt; ours was rolled back, so stock was not taken twice
+            original = findPlacedOrder(idempotencyKey);
+            if (original == null) throw e;
+            return checkRetryMatches(original, customerId, branchId, itemsToOrderMap);
+        }
+    }
+
+    // Always a direct transaction, whatever orders.intakeMode says: the queued intakes re-check stock, which is what a reservation saves
+    @Override
+    public Order placeReservedOrder(String customerId, String reservationId, String idempotencyKey) throws RemoteException, Exception {
         if (customerId == null || customerId.isEmpty()) throw new IllegalArgumentException("Customer ID is required.");
-        if (!branchDAO.findById(branchId).isPresent()) throw new Exception("Branch " + branchId + " not found.");
-        if (itemsToOrderMap == null || itemsToOrderMap.isEmpty()) throw new IllegalArgumentException("Order must have items.");
+        boolean keyed = idempotencyKey != null && !idempotencyKey.isEmpty();
+        if (keyed) {
+            if (idempotencyKey.length() > 100) throw new IllegalArgumentException("Idempotency key is too long (max 100 characters).");
+            Order original = idempotencyCache.get(idempotencyKey);
+            if (original != null) return checkRetryMatches(original, customerId, original.getBranchId(), null);
+        }
+        StockReservation reservation;
+        try {
+            reservation = stockService.claimReservation(reservationId);
+        } catch (Exception e) {
+            // A sold reservation is gone, so a retry of that checkout finds its order by key instead
+            Order original = keyed ? findPlacedOrder(idempotencyKey) : null;
+            if (original == null) throw e;
+            return checkRetryMatches(original, customerId, original.getBranchId(), null);
+        }
+        boolean sold = false;
+        try {
+            if (reservation.getItems().isEmpty()) throw new IllegalArgumentException("Order must have items.");
+            String orderId = newOrderId();
+            List<OrderItem> itemsList = priceItems(orderId, reservation.getItems());
+            double calculatedTotal = itemsList.stream().mapToDouble(OrderItem::getItemTotal).sum();
 
-        Connection conn = null;
-        String orderId = "ORD-" + UUID.randomUUID().toString().substring(0, 12).toUpperCase();
-        List<OrderItem> itemsList = new ArrayList<>();
-        double calculatedTotal = 0;
+            Order newOrder = TransactionRunner.run("placeReservedOrder", conn -> {
+                stockService.processReservedSaleTransactionally(reservation, conn);
+
+                Order order = new Order(orderId, customerId, reservation.getBranchId(), LocalDateTime.now(), itemsList, calculatedTotal);
+                order.setIdempotencyKey(keyed ? idempotencyKey : null);
+                orderDAO.saveOrderHeader(order, conn);
+                orderDAO.saveOrderItems(itemsList, conn);
+                return order;
+            });
+            sold = true;
+            System.out.println("Order placed & committed: " + orderId + " (reservation " + reservationId + ")");
+
+            newOrder.setItems(itemsList);
+            if (keyed) idempotencyCache.put(idempotencyKey, newOrder);
+            return newOrder;
+        } catch (Exception e) {
+            if (keyed && isDuplicateIdempotencyKey(e)) {
+                Order original = findPlacedOrder(idempotencyKey);
+                if (original != null) return checkRetryMatches(original, customerId, original.getBranchId(), null);
+            }
+            throw e instanceof RemoteException ? e : new RemoteException("Error placing order: " + e.getMessage(), e);
+        } finally {
+            stockService.completeReservation(reservationId, sold);
+        }
+    }
 
+    // The order an earlier attempt placed under this key, or null if there is none
+    private Order findPlacedOrder(String idempotencyKey) throws Exception {
+        Order original;
         try {
-            for (Map.Entry<String, Integer> entry : itemsToOrderMap.entrySet()) {
-                Drink drink = drinkDAO.findById(entry.getKey()).orElseThrow(() -> new Exception("Drink " + entry.getKey() + " not found."));
-                if (entry.getValue() <= 0) throw new IllegalArgumentException("Quantity for " + entry.getKey() + " must be positive.");
-                OrderItem item = new OrderItem(drink.getId(), drink.getName(), entry.getValue(), drink.getPrice());
-                item.setOrderIdFk(orderId);
-                itemsList.add(item);
-                calculatedTotal += item.getItemTotal();
+            original = orderDAO.findByIdempotencyKey(idempotencyKey).orElse(null);
+            if (original == null) return null;
+            original = enrichOrder(original);
+        } catch (SQLException e) {
+            throw new RemoteException("DB error finding order.", e);
+        }
+        idempotencyCache.put(idempotencyKey, original);
+        System.out.println("Order retry with key " + idempotencyKey + " answered with " + original.getOrderId());
+        return original;
+    }
+
+    private Order placeNewOrder(String customerId, String branchId, Map<String, Integer> itemsToOrderMap, String idempotencyKey) throws RemoteException, Exception {
+        validateOrderRequest(customerId, branchId, itemsToOrderMap);
+        if (intake != null) {
+            try {
+                String orderId = newOrderId();
+                List<OrderItem> itemsList = priceItems(orderId, itemsToOrderMap);
+                Order newOrder = new Order(orderId, customerId, branchId, LocalDateTime.now(), itemsList,
+                        itemsList.stream().mapToDouble(OrderItem::getItemTotal).sum());
+                newOrder.setIdempotencyKey(idempotencyKey);
+                Order placed = intake.submit(newOrder);
+                if (placed != newOrder) { // The journal answered a retry with the order placed earlier under the key
+                    return checkRetryMatches(placed, customerId, branchId, itemsToOrderMap);
+                }
+                System.out.println((intake instanceof JournalOrderIntake ? "Order journalled: " : "Order placed & committed: ") + orderId);
+                return placed;
+            } catch (Exception e) {
+                throw e instanceof RemoteException ? e : new RemoteException("Error placing order: " + e.getMessage(), e);
             }
+        }
 
-            conn = DatabaseManager.getConnection();
-            conn.setAutoCommit(false);
+        String orderId = newOrderId();
 
-            stockService.processSaleTransactionally(branchId, itemsToOrderMap, conn);
+        try {
+            List<OrderItem> itemsList = priceItems(orderId, itemsToOrderMap);
+            double calculatedTotal = itemsList.stream().mapToDouble(OrderItem::getItemTotal).sum();
 
-            Order newOrder = new Order(orderId, customerId, branchId, LocalDateTime.now(), itemsList, calculatedTotal);
-            orderDAO.saveOrderHeader(newOrder, conn);
-            orderDAO.saveOrderItems(itemsList, conn);
+            Order newOrder = TransactionRunner.run("placeOrder", conn -> {
+                stockService.processSaleTransactionally(branchId, itemsToOrderMap, conn);
 
-            conn.commit();
+                Order order = new Order(orderId, customerId, branchId, LocalDateTime.now(), itemsList, calculatedTotal);
+                order.setIdempotencyKey(idempotencyKey);
+                orderDAO.saveOrderHeader(order, conn);
+                orderDAO.saveOrderItems(itemsList, conn);
+                return order;
+            });
             System.out.println("Order placed & committed: " + orderId);
 
             newOrder.setItems(itemsList);
             return newOrder;
 
         } catch (Exception e) {
-            if (conn != null) {
-                try {
-                    conn.rollback();
-                } catch (SQLException ex) {
-                    System.err.println("Transaction rollback failed: " + ex.getMessage());
+            throw e instanceof RemoteException ? e : new RemoteException("Error placing order: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<OrderResult> placeOrders(List<OrderRequest> requests) throws RemoteException, Exception {
+        if (requests == null || requests.isEmpty()) throw new IllegalArgumentException("No orders to place.");
+        OrderResult[] results = new OrderResult[requests.size()];
+
+        // Validate and price everything before opening the transaction; a bad order is rejected on its own
+        List<Integer> pending = new ArrayList<>();
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            OrderRequest request = requests.get(i);
+            try {
+                if (request == null) throw new IllegalArgumentException("Order request is missing.");
+                validateOrderRequest(request.getCustomerId(), request.getBranchId(), request.getItems());
+                String orderId = newOrderId();
+                List<OrderItem> items = priceItems(orderId, request.getItems());
+                orders.add(new Order(orderId, request.getCustomerId(), request.getBranchId(), LocalDateTime.now(), items,
+                        items.stream().mapToDouble(OrderItem::getItemTotal).sum()));
+                pending.add(i);
+            } catch (Exception e) {
+                results[i] = OrderResult.failure(e.getMessage());
+            }
+        }
+        if (pending.isEmpty()) {
+            return Arrays.asList(results);
+        }
+
+        // One transaction for the lot; if an order breaks it, splitting finds that order and commits the rest
+        List<OrderGroupCommit.Pending> group = new ArrayList<>();
+        for (Order order : orders) group.add(new OrderGroupCommit.Pending(order));
+        OrderGroupCommit.commit(this::commitOrders, group);
+        int committed = 0;
+        for (int j = 0; j < pending.size(); j++) {
+            try {
+                results[pending.get(j)] = OrderResult.success(group.get(j).await());
+                committed++;
+            } catch (Exception e) {
+                results[pending.get(j)] = OrderResult.failure(e.getMessage());
+            }
+        }
+        System.out.println("Bulk orders committed: " + committed + " of " + requests.size());
+        return Arrays.asList(results);
+    }
+
+    // Writes validated, priced orders in one transaction. Per order null if committed, else why its stock could not be taken;
+    // throws (after rolling back) if the transaction as a whole failed. Shared by placeOrders, group commit and the journal.
+    private List<String> commitOrders(List<Order> orders) throws Exception {
+        List<OrderRequest> sales = new ArrayList<>();
+        for (Order order : orders) {
+            Map<String, Integer> items = new LinkedHashMap<>();
+            for (OrderItem item : order.getItems()) items.merge(item.getDrinkId(), item.getQuantity(), Integer::sum);
+            sales.add(new OrderRequest(order.getCustomerId(), order.getBranchId(), items));
+        }
+        return TransactionRunner.run("placeOrders", conn -> {
+            List<String> stockFailures = stockService.processSalesTransactionally(sales, conn);
+
+            List<Order> accepted = new ArrayList<>();
+            List<OrderItem> acceptedItems = new ArrayList<>();
+            for (int i = 0; i < orders.size(); i++) {
+                if (stockFailures.get(i) == null) {
+                    accepted.add(orders.get(i));
+                    acceptedItems.addAll(orders.get(i).getItems());
                 }
             }
-            throw e instanceof RemoteException ? e : new RemoteException("Error placing order: " + e.getMessage(), e);
-        } finally {
-            if (conn != null) {
-                try {
-                    conn.setAutoCommit(true);
-                    conn.close();
-                } catch (SQLException ex) { /* ignored */ }
+            orderDAO.saveOrderHeaders(accepted, conn);
+            orderDAO.saveOrderItems(acceptedItems, conn);
+            return stockFailures;
+        });
+    }
+
+    // The sequencer has already checked these orders against its copy of the branch's stock, so this only writes the results
+    private void commitSequencedOrders(String branchId, Map<String, Integer> taken, List<Order> orders) throws Exception {
+        TransactionRunner.run("placeSequencedOrders", conn -> {
+            List<String> shortDrinks = stockService.takeSequencedStock(branchId, taken, conn);
+            if (!shortDrinks.isEmpty()) {
+                throw new Exception("Stock for " + String.join(", ", shortDrinks) + " at " + branchId + " was lowered outside the order sequencer.");
             }
+            List<OrderItem> items = new ArrayList<>();
+            for (Order order : orders) items.addAll(order.getItems());
+            orderDAO.saveOrderHeaders(orders, conn);
+            orderDAO.saveOrderItems(items, conn);
+            return null;
+        });
+    }
+
+    // Lets queued orders commit before the connection pool closes
+    public void shutdown() {
+        if (intake != null) {
+            intake.shutdown(10_000);
         }
     }
 
+    // A reused key must describe the same order; otherwise the client has a bug and silently returning the old order would hide it
+    private static Order checkRetryMatches(Order original, String customerId, String branchId, Map<String, Integer> itemsToOrderMap) {
+        Map<String, Integer> originalItems = new HashMap<>();
+        for (OrderItem item : original.getItems()) originalItems.merge(item.getDrinkId(), item.getQuantity(), Integer::sum);
+        if (!original.getCustomerId().equals(customerId) || !original.getBranchId().equals(branchId)
+                || (itemsToOrderMap != null && !originalItems.equals(new HashMap<>(itemsToOrderMap)))) {
+            throw new IllegalArgumentException("Idempotency key " + original.getIdempotencyKey() + " was already used for a different order (" + original.getOrderId() + ").");
+        }
+        return original;
+    }
+
+    private static boolean isDuplicateIdempotencyKey(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException && ((SQLException) t).getErrorCode() == 1062
+                    && String.valueOf(t.getMessage()).contains(IOrderDAO.IDEMPOTENCY_KEY_INDEX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void validateOrderRequest(String customerId, String branchId, Map<String, Integer> itemsToOrderMap) throws Exception {
+        if (customerId == null || customerId.isEmpty()) throw new IllegalArgumentException("Customer ID is required.");
+        if (!referenceData.findBranch(branchId).isPresent()) throw new Exception("Branch " + branchId + " not found.");
+        if (itemsToOrderMap == null || itemsToOrderMap.isEmpty()) throw new IllegalArgumentException("Order must have items.");
+    }
+
+    private List<OrderItem> priceItems(String orderId, Map<String, Integer> itemsToOrderMap) throws Exception {
+        List<OrderItem> itemsList = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : itemsToOrderMap.entrySet()) {
+            Drink drink = referenceData.findDrink(entry.getKey()).orElseThrow(() -> new Exception("Drink " + entry.getKey() + " not found."));
+            if (entry.getValue() == null || entry.getValue() <= 0) throw new IllegalArgumentException("Quantity for " + entry.getKey() + " must be positive.");
+            OrderItem item = new OrderItem(drink.getId(), drink.getName(), entry.getValue(), drink.getPrice());
+            item.setOrderIdFk(orderId);
+            itemsList.add(item);
+        }
+        return itemsList;
+    }
+
+    private static String newOrderId() {
+        return ORDER_IDS.nextId();
+    }
+
     private Order enrichOrder(Order order) throws RemoteException, Exception {
         if (order == null) return null;
         List<OrderItem> items = orderDAO.findItemsByOrderId(order.getOrderId());
         for (OrderItem item : items) {
-            Drink drink = drinkDAO.findById(item.getDrinkId()).orElse(new Drink(item.getDrinkId(), "Unknown", "N/A", 0));
+            Drink drink = referenceData.findDrink(item.getDrinkId()).orElse(new Drink(item.getDrinkId(), "Unknown", "N/A", 0));
             item.setDrinkName(drink.getName());
         }
         order.setItems(items);
@@ -114,10 +362,7 @@ public class OrderServiceImplementation extends UnicastRemoteObject implements I
     @Override
     public List<Order> getOrdersByBranch(String branchId) throws RemoteException, Exception {
         try {
-            List<Order> rawOrders = orderDAO.findByBranchId(branchId);
-            List<Order> enriched = new ArrayList<>();
-            for (Order o : rawOrders) enriched.add(enrichOrder(o));
-            return enriched;
+            return orderDAO.findByBranchIdWithItems(branchId);
         } catch (SQLException e) {
             throw new RemoteException("DB error finding orders by branch.", e);
         }
@@ -126,12 +371,61 @@ public class OrderServiceImplementation extends UnicastRemoteObject implements I
     @Override
     public List<Order> getOrdersByCustomer(String customerId) throws RemoteException, Exception {
         try {
-            List<Order> rawOrders = orderDAO.findByCustomerId(customerId);
-            List<Order> enriched = new ArrayList<>();
-            for (Order o : rawOrders) enriched.add(enrichOrder(o));
-            return enriched;
+            return orderDAO.findByCustomerIdWithItems(customerId);
         } catch (SQLException e) {
             throw new RemoteException("DB error finding orders by customer.", e);
         }
     }
+
+    @Override
+    public OrderPage getOrdersByBranch(String branchId, String cursor, int pageSize, LocalDateTime from, LocalDateTime to) throws RemoteException, Exception {
+        return getOrderPage(OrderFilter.byBranch(branchId).between(from, to), cursor, pageSize);
+    }
+
+    @Override
+    public OrderPage getOrdersByCustomer(String customerId, String cursor, int pageSize, LocalDateTime from, LocalDateTime to) throws RemoteException, Exception {
+        return getOrderPage(OrderFilter.byCustomer(customerId).between(from, to), cursor, pageSize);
+    }
+
+    private OrderPage getOrderPage(OrderFilter filter, String cursor, int pageSize) throws RemoteException, Exception {
+        if (pageSize <= 0) throw new IllegalArgumentException("Page size must be positive.");
+        int limit = Math.min(pageSize, MAX_PAGE_SIZE);
+        OrderPageCursor after = OrderPageCursor.decode(cursor);
+        try {
+            // One extra row tells us whether there is a next page without a second query or an empty last page
+            List<Order> orders = orderDAO.findPageWithItems(filter, after == null ? null : after.timestamp, after == null ? null : after.orderId, limit + 1);
+            if (orders.size() <= limit) {
+                return new OrderPage(orders, null);
+            }
+            List<Order> page = new ArrayList<>(orders.subList(0, limit));
+            return new OrderPage(page, OrderPageCursor.after(page.get(limit - 1)));
+        } catch (SQLException e) {
+            throw new RemoteException("DB error finding orders.", e);
+        }
+    }
+
+    @Override
+    public RemoteIterator<Order> exportOrders(String branchId, LocalDateTime from, LocalDateTime to) throws RemoteException, Exception {
+        if (branchId != null && !referenceData.findBranch(branchId).isPresent()) throw new Exception("Branch " + branchId + " not found.");
+        OrderFilter filter = (branchId == null ? OrderFilter.all() : OrderFilter.byBranch(branchId)).between(from, to);
+        try {
+            Stream<Order> orders = orderDAO.streamOrders(filter);
+            Iterator<Order> cursor = orders.iterator();
+            return RemoteChunkIterator.open("order export", maxSize -> attachItems(RemoteChunkIterator.take(cursor, maxSize)), orders::close);
+        } catch (SQLException e) {
+            throw new RemoteException("DB error exporting orders.", e);
+        }
+    }
+
+    // One items query per chunk, on its own pooled connection (the export's connection is busy streaming headers)
+    private List<Order> attachItems(List<Order> orders) throws Exception {
+        Map<String, List<OrderItem>> itemsByOrder = new HashMap<>();
+        for (Order order : orders) itemsByOrder.put(order.getOrderId(), new ArrayList<>());
+        for (OrderItem item : orderDAO.findItemsByOrderIds(itemsByOrder.keySet())) {
+            item.setDrinkName(referenceData.findDrink(item.getDrinkId()).map(Drink::getName).orElse("Unknown"));
+            itemsByOrder.get(item.getOrderIdFk()).add(item);
+        }
+        for (Order order : orders) order.setItems(itemsByOrder.get(order.getOrderId()));
+        return orders;
+    }
 }
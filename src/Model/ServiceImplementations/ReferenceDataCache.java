@@ -0,0 +1,112 @@
+package Model.ServiceImplementations;
+
+import Model.DataAccessObjectInterfaces.IBranchDAO;
+import Model.DataAccessObjectInterfaces.IDrinkDAO;
+import Model.DataEntities.Branch;
+import Model.DataEntities.Drink;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+// Read-through cache of drinks and branches shared by the services, so validating and enriching orders costs no DB round trips.
+// Readers only ever see an immutable snapshot; misses and invalidations publish a new copy. Unknown IDs are not cached.
+public class ReferenceDataCache {
+
+    private static final class Snapshot {
+        final Map<String, Drink> drinks;
+        final Map<String, Branch> branches;
+        final long generation; // Bumped by every invalidation
+
+        Snapshot(Map<String, Drink> drinks, Map<String, Branch> branches, long generation) {
+            this.drinks = drinks;
+            this.branches = branches;
+            this.generation = generation;
+        }
+    }
+
+    private final IDrinkDAO drinkDAO;
+    private final IBranchDAO branchDAO;
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of(), 0);
+
+    public ReferenceDataCache(IDrinkDAO drinkDAO, IBranchDAO branchDAO) {
+        this.drinkDAO = drinkDAO;
+        this.branchDAO = branchDAO;
+    }
+
+    public Optional<Drink> findDrink(String drinkId) throws SQLException {
+        if (drinkId == null) {
+            return Optional.empty();
+        }
+        Snapshot current = snapshot;
+        Drink drink = current.drinks.get(drinkId);
+        if (drink == null) {
+            Optional<Drink> loaded = drinkDAO.findById(drinkId);
+            if (!loaded.isPresent()) {
+                return Optional.empty();
+            }
+            drink = copy(loaded.get());
+            publish(current.generation, drink, null);
+        }
+        return Optional.of(copy(drink)); // Drink has a setter, so callers never get the cached instance
+    }
+
+    public Optional<Branch> findBranch(String branchId) throws SQLException {
+        if (branchId == null) {
+            return Optional.empty();
+        }
+        Snapshot current = snapshot;
+        Branch branch = current.branches.get(branchId);
+        if (branch == null) {
+            Optional<Branch> loaded = branchDAO.findById(branchId);
+            if (!loaded.isPresent()) {
+                return Optional.empty();
+            }
+            branch = loaded.get();
+            publish(current.generation, null, branch);
+        }
+        return Optional.of(branch); // Branch is immutable
+    }
+
+    // Call after the change has been committed
+    public synchronized void invalidateDrink(String drinkId) {
+        Map<String, Drink> drinks = new HashMap<>(snapshot.drinks);
+        drinks.remove(drinkId);
+        snapshot = new Snapshot(Map.copyOf(drinks), snapshot.branches, snapshot.generation + 1);
+    }
+
+    public synchronized void invalidateBranch(String branchId) {
+        Map<String, Branch> branches = new HashMap<>(snapshot.branches);
+        branches.remove(branchId);
+        snapshot = new Snapshot(snapshot.drinks, Map.copyOf(branches), snapshot.generation + 1);
+    }
+
+    public synchronized void invalidateAll() {
+        snapshot = new Snapshot(Map.of(), Map.of(), snapshot.generation + 1);
+    }
+
+    private synchronized void publish(long loadedAtGeneration, Drink drink, Branch branch) {
+        Snapshot current = snapshot;
+        if (current.generation != loadedAtGeneration) {
+            return; // Invalidated while we were reading the DB; what we read may be stale, so let the next reader load again
+        }
+        Map<String, Drink> drinks = current.drinks;
+        Map<String, Branch> branches = current.branches;
+        if (drink != null) {
+            Map<String, Drink> copy = new HashMap<>(drinks);
+            copy.put(drink.getId(), drink);
+            drinks = Map.copyOf(copy);
+        }
+        if (branch != null) {
+            Map<String, Branch> copy = new HashMap<>(branches);
+            copy.put(branch.getId(), branch);
+            branches = Map.copyOf(copy);
+        }
+        snapshot = new Snapshot(drinks, branches, current.generation);
+    }
+
+    private static Drink copy(Drink d) {
+        return new Drink(d.getId(), d.getName(), d.getBrand(), d.getPrice());
+    }
+}
@@ -0,0 +1,188 @@
+package Model.ServiceImplementations;
+
+import Model.ServiceInterfaces.RemoteIterator;
+
+import java.io.Serializable;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+// Server side of RemoteIterator: hands out a source's rows a chunk at a time while the following chunk is read on a background thread.
+// Each open iterator pins a DB cursor and its pooled connection, so at most rmi.iterator.maxOpen exist at once, and one that has not
+// been called for rmi.iterator.leaseMs is closed and unexported by the reaper.
+class RemoteChunkIterator<T extends Serializable> extends UnicastRemoteObject implements RemoteIterator<T> {
+
+    @FunctionalInterface
+    interface ChunkSource<T> {
+        List<T> read(int maxSize) throws Exception; // Fewer than maxSize (possibly none) once the source is exhausted
+    }
+
+    private static final int CHUNK_SIZE = Integer.getInteger("rmi.iterator.chunkSize", 500);
+    private static final long LEASE_MILLIS = Long.getLong("rmi.iterator.leaseMs", 60_000L);
+    private static final int MAX_OPEN = Integer.getInteger("rmi.iterator.maxOpen", 4);
+
+    private static final Set<RemoteChunkIterator<?>> OPEN = ConcurrentHashMap.newKeySet();
+    private static final ExecutorService PREFETCH = Executors.newCachedThreadPool(daemon("remote-iterator-prefetch"));
+    private static final ScheduledExecutorService REAPER = Executors.newSingleThreadScheduledExecutor(daemon("remote-iterator-reaper"));
+
+    static {
+        long interval = Math.max(100, LEASE_MILLIS / 4);
+        REAPER.scheduleWithFixedDelay(RemoteChunkIterator::reapIdle, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private final String name;
+    private final ChunkSource<T> source;
+    private final AutoCloseable resource;
+    private final AtomicBoolean resourceClosed = new AtomicBoolean();
+    private CompletableFuture<List<T>> pending; // Guarded by this
+    private boolean closed;                     // Guarded by this
+    private volatile long lastAccessMillis = System.currentTimeMillis();
+
+    private RemoteChunkIterator(String name, ChunkSource<T> source, AutoCloseable resource) throws RemoteException {
+        super();
+        this.name = name;
+        this.source = source;
+        this.resource = resource;
+    }
+
+    // resource (the DAO stream) is closed once the source is exhausted, on close(), or when the lease runs out
+    static synchronized <T extends Serializable> RemoteIterator<T> open(String name, ChunkSource<T> source, AutoCloseable resource) throws RemoteException {
+        if (OPEN.size() >= MAX_OPEN) {
+            closeQuietly(name, resource);
+            throw new RemoteException("Too many exports open (" + MAX_OPEN + "); finish or close one and try again.");
+        }
+        RemoteChunkIterator<T> iterator;
+        try {
+            iterator = new RemoteChunkIterator<>(name, source, resource);
+        } catch (RemoteException e) {
+            closeQuietly(name, resource);
+            throw e;
+        }
+        synchronized (iterator) {
+            iterator.pending = iterator.prefetch(); // The first chunk is being read before the client asks for it
+        }
+        OPEN.add(iterator);
+        return iterator;
+    }
+
+    // Reads chunks straight from a DAO stream, which is closed with the iterator
+    static <T extends Serializable> RemoteIterator<T> open(String name, Stream<T> rows) throws RemoteException {
+        Iterator<T> cursor = rows.iterator();
+        return open(name, maxSize -> take(cursor, maxSize), rows::close);
+    }
+
+    static <T> List<T> take(Iterator<T> cursor, int maxSize) {
+        List<T> chunk = new ArrayList<>(maxSize);
+        while (chunk.size() < maxSize && cursor.hasNext()) {
+            chunk.add(cursor.next());
+        }
+        return chunk;
+    }
+
+    @Override
+    public synchronized List<T> next() throws RemoteException, Exception {
+        if (closed) {
+            throw new Exception("Export " + name + " is closed (finished, closed, or idle longer than " + LEASE_MILLIS + "ms).");
+        }
+        lastAccessMillis = System.currentTimeMillis();
+        List<T> chunk;
+        try {
+            chunk = pending.get();
+        } catch (ExecutionException e) {
+            close();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException && cause.getCause() instanceof SQLException) {
+                cause = cause.getCause(); // The DAO stream wraps SQLExceptions
+            }
+            throw new RemoteException("Error reading " + name, cause);
+        }
+        if (chunk.isEmpty()) {
+            close();
+        } else if (chunk.size() < CHUNK_SIZE) {
+            closeQuietly(); // Source exhausted: give the cursor and its connection back now; the next call returns the empty chunk
+            pending = CompletableFuture.completedFuture(new ArrayList<>());
+        } else {
+            pending = prefetch();
+        }
+        lastAccessMillis = System.currentTimeMillis();
+        return chunk;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        OPEN.remove(this);
+        pending.whenComplete((chunk, error) -> closeQuietly()); // A prefetch may still be reading from the source
+        try {
+            UnicastRemoteObject.unexportObject(this, true);
+        } catch (NoSuchObjectException e) { /* already unexported */ }
+    }
+
+    private CompletableFuture<List<T>> prefetch() {
+        CompletableFuture<List<T>> chunk = new CompletableFuture<>();
+        PREFETCH.execute(() -> {
+            try {
+                chunk.complete(source.read(CHUNK_SIZE));
+            } catch (Throwable e) {
+                chunk.completeExceptionally(e);
+            }
+        });
+        return chunk;
+    }
+
+    private void closeQuietly() {
+        if (resourceClosed.compareAndSet(false, true)) {
+            closeQuietly(name, resource);
+        }
+    }
+
+    private static void closeQuietly(String name, AutoCloseable resource) {
+        try {
+            resource.close();
+        } catch (Exception e) {
+            System.err.println("Warn: could not close " + name + ": " + e.getMessage());
+        }
+    }
+
+    private static void reapIdle() {
+        for (RemoteChunkIterator<?> iterator : OPEN) {
+            if (System.currentTimeMillis() - iterator.lastAccessMillis > LEASE_MILLIS) {
+                iterator.closeIfIdle();
+            }
+        }
+    }
+
+    // Checked again under the lock: the client may have been in next() while the reaper looked
+    private synchronized void closeIfIdle() {
+        if (!closed && System.currentTimeMillis() - lastAccessMillis > LEASE_MILLIS) {
+            System.out.println("Closing " + name + ": idle for more than " + LEASE_MILLIS + "ms.");
+            close();
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -2,18 +2,25 @@ package Model.ServiceImplementations;
 
 import Model.DataAccessObjectInterfaces.IBranchDAO;
 import Model.DataAccessObjectInterfaces.IOrderDAO;
+import Model.DataAccessObjectInterfaces.OrderFilter;
 import Model.DataEntities.Branch;
 import Model.DataEntities.Order;
 import Model.ServiceInterfaces.IReportingService;
+import Model.ServiceInterfaces.RemoteIterator;
 
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
 
+// Every report streams the orders through forEachOrder and keeps only running totals, so memory does not grow with order history
 public class ReportingServiceImplementation extends UnicastRemoteObject implements IReportingService {
     private final IOrderDAO orderDAO;
     private final IBranchDAO branchDAO;
@@ -22,13 +29,21 @@ public class ReportingServiceImplementation extends UnicastRemoteObject implemen
         this.orderDAO=orderDAO;
         this.branchDAO=branchDAO;
     }
+
+    private static class SalesTotals{
+        double total;
+        long orders;
+    }
+
     @Override
     public List<String> getCustomersByBranch(String branchId) throws RemoteException, Exception {
         try{
             if(!branchDAO.findById(branchId).isPresent()){
                 throw new Exception("Branch "+branchId+" not found.");
             }
-            return orderDAO.findByBranchId(branchId).stream().map(Order::getCustomerId).distinct().collect(Collectors.toList());
+            Set<String> customers=new LinkedHashSet<>();
+            orderDAO.forEachOrder(OrderFilter.byBranch(branchId),order->customers.add(order.getCustomerId()));
+            return new ArrayList<>(customers);
         }catch(SQLException e){
             throw new RemoteException("DB error getting customers by branch.", e);
         }
@@ -40,7 +55,7 @@ public class ReportingServiceImplementation extends UnicastRemoteObject implemen
             if(!branchDAO.findById(branchId).isPresent()){
                 throw new Exception("Branch "+branchId+" not found.");
             }
-            return orderDAO.findByBranchId(branchId).stream().mapToDouble(Order::getTotalAmount).sum();
+            return sumSales(OrderFilter.byBranch(branchId)).total;
         }catch (SQLException e){
             throw new RemoteException("DB error getting branch sales.", e);
         }
@@ -49,23 +64,38 @@ public class ReportingServiceImplementation extends UnicastRemoteObject implemen
     @Override
     public double getTotalBusinessSales() throws RemoteException, Exception {
         try{
-            return orderDAO.findAll().stream().mapToDouble(Order::getTotalAmount).sum();
+            return sumSales(OrderFilter.all()).total;
         } catch (SQLException e) {
             throw new RemoteException("DB error getting total business sales.",e);
         }
     }
 
+    private SalesTotals sumSales(OrderFilter filter) throws SQLException{
+        SalesTotals totals=new SalesTotals();
+        orderDAO.forEachOrder(filter,order->{
+            totals.total+=order.getTotalAmount();
+            totals.orders++;
+        });
+        return totals;
+    }
+
     @Override
     public Map<String, String> generateBranchSalesReport(String branchId) throws RemoteException, Exception {
         try{
             Branch branch=branchDAO.findById(branchId).orElseThrow(()->new Exception("Branch "+branchId+" not found."));
-            List<Order> orders=orderDAO.findByBranchId(branchId);
+            SalesTotals totals=new SalesTotals();
+            Set<String> customers=new HashSet<>();
+            orderDAO.forEachOrder(OrderFilter.byBranch(branchId),order->{
+                totals.total+=order.getTotalAmount();
+                totals.orders++;
+                customers.add(order.getCustomerId());
+            });
             Map<String,String> report=new HashMap<>();
             report.put("Branch ID",branch.getId());
             report.put("Branch Name",branch.getName());
-            report.put("Total Sales",String.format("%.2f", orders.stream().mapToDouble(Order::getTotalAmount).sum()));
-            report.put("Number of orders",String.valueOf(orders.size()));
-            report.put("Distinct Customers",String.valueOf(orders.stream().map(Order::getCustomerId).distinct().count()));
+            report.put("Total Sales",String.format("%.2f", totals.total));
+            report.put("Number of orders",String.valueOf(totals.orders));
+            report.put("Distinct Customers",String.valueOf(customers.size()));
             return report;
         }catch (SQLException e){
             throw new RemoteException("DB error generating branch report",e);
@@ -76,14 +106,20 @@ public class ReportingServiceImplementation extends UnicastRemoteObject implemen
     public Map<String, String> generateOverallBusinessReport() throws RemoteException, Exception {
         try{
             List<Branch> branches=branchDAO.findAll();
-            List<Order> orders=orderDAO.findAll();
+            SalesTotals totals=new SalesTotals();
+            Map<String,Double> salesByBranch=new HashMap<>();
+            orderDAO.forEachOrder(OrderFilter.all(),order->{
+                totals.total+=order.getTotalAmount();
+                totals.orders++;
+                salesByBranch.merge(order.getBranchId(),order.getTotalAmount(),Double::sum);
+            });
             Map<String,String> report=new HashMap<>();
-            report.put("Overall Total Sales",String.format("%.2f", orders.stream().mapToDouble(Order::getTotalAmount).sum()));
-            report.put("Overall Number of Orders",String.valueOf(orders.size()));
+            report.put("Overall Total Sales",String.format("%.2f", totals.total));
+            report.put("Overall Number of Orders",String.valueOf(totals.orders));
             report.put("Number of Branches",String.valueOf(branches.size()));
             StringBuilder stringBuilder=new StringBuilder();
             for(Branch b: branches){
-                double sales=orders.stream().filter(o->o.getBranchId().equals(b.getId())).mapToDouble(Order::getTotalAmount).sum();
+                double sales=salesByBranch.getOrDefault(b.getId(),0.0);
                 stringBuilder.append(b.getName()).append(" (").append(b.getId()).append(" ):").append(String.format("%.2f", sales)).append("; ");
             }
             report.put("Sales by Branch",stringBuilder.toString());
@@ -92,4 +128,17 @@ public class ReportingServiceImplementation extends UnicastRemoteObject implemen
             throw new RemoteException("DB error generating overall report.",e);
         }
     }
+
+    @Override
+    public RemoteIterator<Order> streamSalesLedger(String branchId, LocalDateTime from, LocalDateTime to) throws RemoteException, Exception {
+        try{
+            if(branchId!=null&&!branchDAO.findById(branchId).isPresent()){
+                throw new Exception("Branch "+branchId+" not found.");
+            }
+            OrderFilter filter=(branchId==null?OrderFilter.all():OrderFilter.byBranch(branchId)).between(from,to);
+            return RemoteChunkIterator.open("sales ledger",orderDAO.streamOrders(filter));
+        }catch(SQLException e){
+            throw new RemoteException("DB error streaming the sales ledger.",e);
+        }
+    }
 }
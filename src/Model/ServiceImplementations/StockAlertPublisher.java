@@ -0,0 +1,70 @@
+package Model.ServiceImplementations;
+
+import Model.DataEntities.LowStockEvent;
+import Model.ServiceInterfaces.IStockAlertListener;
+
+import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Pushes low-stock events to the remote listeners clients registered. Every listener gets its own delivery thread and queue,
+// so the committing thread never waits on the network and a slow or vanished client holds up nobody else. A listener whose
+// call fails, or that falls stock.alerts.maxQueued events behind, is dropped and has to subscribe again.
+class StockAlertPublisher {
+    private final ConcurrentHashMap<IStockAlertListener, ThreadPoolExecutor> listeners = new ConcurrentHashMap<>();
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private final int maxQueued;
+
+    StockAlertPublisher(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    static StockAlertPublisher fromSystemProperties() {
+        return new StockAlertPublisher(Integer.getInteger("stock.alerts.maxQueued", 1000));
+    }
+
+    // Subscribing the same listener twice is the same as subscribing once (RMI stubs of one remote object are equal)
+    void add(IStockAlertListener listener) {
+        ThreadPoolExecutor delivery = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(maxQueued), r -> {
+            Thread t = new Thread(r, "stock-alert-push-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        if (listeners.putIfAbsent(listener, delivery) != null) {
+            delivery.shutdown();
+        }
+    }
+
+    void remove(IStockAlertListener listener) {
+        ThreadPoolExecutor delivery = listeners.remove(listener);
+        if (delivery != null) {
+            delivery.shutdownNow();
+        }
+    }
+
+    void publish(LowStockEvent event) {
+        for (Map.Entry<IStockAlertListener, ThreadPoolExecutor> entry : listeners.entrySet()) {
+            IStockAlertListener listener = entry.getKey();
+            try {
+                entry.getValue().execute(() -> deliver(listener, event));
+            } catch (RejectedExecutionException e) {
+                System.err.println("Warn: stock alert listener is " + maxQueued + " events behind; unsubscribing it.");
+                remove(listener);
+            }
+        }
+    }
+
+    private void deliver(IStockAlertListener listener, LowStockEvent event) {
+        try {
+            listener.onLowStockEvent(event);
+        } catch (RemoteException e) {
+            System.err.println("Warn: could not push a stock alert (" + e.getMessage() + "); unsubscribing the listener.");
+            remove(listener);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package Model.ServiceImplementations;
+
+import Model.DataEntities.StockReservation;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Stock held for carts that are still being built, so a cashier finds out an item is short when adding it rather than at checkout.
+// Holds live only in this server's memory and never touch the database: per (branch, drink) the total held is a counter that
+// reserving, releasing and expiring move with compare-and-set, and each reservation is claimed by flipping its state, so nothing
+// here blocks. Sales that are not a reserved checkout see the stock minus what is held. Servers sharing a database only know their own holds.
+class StockReservations {
+    // BUSY: one caller is changing or checking out the reservation; DONE: released, expired or sold, and its holds are gone
+    private enum State { ACTIVE, BUSY, DONE }
+
+    private static final class Reservation {
+        final String id;
+        final String branchId;
+        final Map<String, Integer> lines = new ConcurrentHashMap<>(); // Only changed while BUSY
+        final AtomicReference<State> state = new AtomicReference<>(State.BUSY);
+        volatile long expiresAtMillis;
+        volatile boolean claimed;      // BUSY for a checkout, which may die without completing
+        volatile long claimedUntilMillis; // After this the sweeper presumes the checkout gone and takes the holds back
+
+        Reservation(String id, String branchId) {
+            this.id = id;
+            this.branchId = branchId;
+        }
+
+        StockReservation snapshot() {
+            return new StockReservation(id, branchId, new TreeMap<>(lines),
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(expiresAtMillis), ZoneId.systemDefault()));
+        }
+    }
+
+    private final ConcurrentHashMap<String, Reservation> reservations = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<List<String>, AtomicInteger> held = new ConcurrentHashMap<>(); // [branch, drink] -> quantity held
+    private final long ttlMillis;
+    private final long checkoutTimeoutMillis;
+
+    StockReservations(long ttlMillis, long checkoutTimeoutMillis) {
+        this.ttlMillis = ttlMillis;
+        this.checkoutTimeoutMillis = checkoutTimeoutMillis;
+        long sweepMillis = Math.max(1_000, Math.min(30_000, Math.min(ttlMillis, checkoutTimeoutMillis) / 10));
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stock-reservation-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::expireStale, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    static StockReservations fromSystemProperties() {
+        return new StockReservations(TimeUnit.SECONDS.toMillis(Long.getLong("stock.reservation.ttlSeconds", 600L)),
+                TimeUnit.SECONDS.toMillis(Long.getLong("stock.reservation.checkoutTimeoutSeconds", 60L)));
+    }
+
+    int held(String branchId, String drinkId) {
+        AtomicInteger count = held.get(List.of(branchId, drinkId));
+        return count == null ? 0 : count.get();
+    }
+
+    // Sets each listed line to the given quantity (0 drops it) if the stock, less everyone's holds, covers the increase; all lines
+    // or none. reservationId null starts a new reservation. stock: DrinkID -> Quantity in the database. Restarts the expiry clock.
+    StockReservation hold(String reservationId, String branchId, Map<String, Integer> lines, Map<String, Integer> stock) throws Exception {
+        Reservation reservation;
+        if (reservationId == null) {
+            reservation = new Reservation(UUID.randomUUID().toString(), branchId);
+            reservations.put(reservation.id, reservation);
+        } else {
+            reservation = acquire(reservationId);
+            if (!reservation.branchId.equals(branchId)) {
+                reservation.state.set(State.ACTIVE);
+                throw new IllegalArgumentException("Reservation " + reservationId + " holds stock at " + reservation.branchId + ", not " + branchId + ".");
+            }
+        }
+        Map<String, Integer> applied = new HashMap<>();
+        try {
+            for (Map.Entry<String, Integer> line : new TreeMap<>(lines).entrySet()) {
+                String drinkId = line.getKey();
+                int delta = line.getValue() - reservation.lines.getOrDefault(drinkId, 0);
+                if (delta == 0) {
+                    continue;
+                }
+                int inStock = stock.getOrDefault(drinkId, 0);
+                if (!adjust(branchId, drinkId, delta, inStock)) {
+                    throw new Exception("Insufficient stock for " + drinkId + " at " + branchId + ". Available stock: "
+                            + Math.max(0, inStock - held(branchId, drinkId) + reservation.lines.getOrDefault(drinkId, 0)) + ", Required: " + line.getValue());
+                }
+                applied.put(drinkId, delta);
+            }
+        } catch (Exception e) {
+            for (Map.Entry<String, Integer> undo : applied.entrySet()) {
+                adjust(branchId, undo.getKey(), -undo.getValue(), 0);
+            }
+            if (reservationId == null) {
+                finish(reservation);
+            } else {
+                reservation.state.set(State.ACTIVE);
+            }
+            throw e;
+        }
+        for (Map.Entry<String, Integer> line : applied.entrySet()) {
+            if (reservation.lines.merge(line.getKey(), line.getValue(), Integer::sum) == 0) {
+                reservation.lines.remove(line.getKey());
+            }
+        }
+        reservation.expiresAtMillis = System.currentTimeMillis() + ttlMillis;
+        reservation.state.set(State.ACTIVE);
+        return reservation.snapshot();
+    }
+
+    StockReservation extend(String reservationId) throws Exception {
+        Reservation reservation = acquire(reservationId);
+        reservation.expiresAtMillis = System.currentTimeMillis() + ttlMillis;
+        reservation.state.set(State.ACTIVE);
+        return reservation.snapshot();
+    }
+
+    // Releasing a reservation that has already expired or been sold does nothing
+    void release(String reservationId) throws Exception {
+        Reservation reservation = reservations.get(reservationId);
+        if (reservation == null) {
+            return;
+        }
+        if (!reservation.state.compareAndSet(State.ACTIVE, State.BUSY)) {
+            if (reservation.state.get() == State.DONE) {
+                return;
+            }
+            throw new Exception("Reservation " + reservationId + " is being checked out.");
+        }
+        finish(reservation);
+    }
+
+    // Checkout: the reservation can no longer expire or change until complete() is called, or stock.reservation.checkoutTimeoutSeconds passes
+    StockReservation claim(String reservationId) throws Exception {
+        Reservation reservation = acquire(reservationId);
+        reservation.claimedUntilMillis = System.currentTimeMillis() + checkoutTimeoutMillis;
+        reservation.claimed = true;
+        return reservation.snapshot();
+    }
+
+    // sold: the stock has left the database, so the holds go; otherwise the reservation is active again for another try
+    void complete(String reservationId, boolean sold) {
+        Reservation reservation = reservations.get(reservationId);
+        if (reservation == null) {
+            return;
+        }
+        // Compare-and-set, as the sweeper may already have given up on this checkout and released the holds itself
+        if (sold) {
+            if (reservation.state.compareAndSet(State.BUSY, State.DONE)) {
+                giveBack(reservation);
+            }
+        } else {
+            reservation.claimed = false;
+            reservation.state.compareAndSet(State.BUSY, State.ACTIVE);
+        }
+    }
+
+    private Reservation acquire(String reservationId) throws Exception {
+        Reservation reservation = reservationId == null ? null : reservations.get(reservationId);
+        if (reservation == null) {
+            throw new Exception("Reservation " + reservationId + " has expired or does not exist.");
+        }
+        if (!reservation.state.compareAndSet(State.ACTIVE, State.BUSY)) {
+            if (reservation.state.get() == State.DONE) {
+                throw new Exception("Reservation " + reservationId + " has expired or does not exist.");
+            }
+            throw new Exception("Reservation " + reservationId + " is being changed or checked out by another request.");
+        }
+        if (reservation.expiresAtMillis < System.currentTimeMillis()) {
+            finish(reservation); // Expired but not swept yet
+            throw new Exception("Reservation " + reservationId + " has expired or does not exist.");
+        }
+        return reservation;
+    }
+
+    // Holds the line back only if stock - held covers a positive delta; a negative delta always succeeds
+    private boolean adjust(String branchId, String drinkId, int delta, int stock) {
+        AtomicInteger count = held.computeIfAbsent(List.of(branchId, drinkId), k -> new AtomicInteger());
+        while (true) {
+            int current = count.get();
+            if (delta > 0 && current + delta > stock) {
+                return false;
+            }
+            if (count.compareAndSet(current, current + delta)) {
+                return true;
+            }
+        }
+    }
+
+    // Caller owns the reservation (BUSY); gives its stock back
+    private void finish(Reservation reservation) {
+        reservation.state.set(State.DONE);
+        giveBack(reservation);
+    }
+
+    private void giveBack(Reservation reservation) {
+        for (Map.Entry<String, Integer> line : reservation.lines.entrySet()) {
+            adjust(reservation.branchId, line.getKey(), -line.getValue(), 0);
+        }
+        reservations.remove(reservation.id, reservation);
+    }
+
+    private void expireStale() {
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        for (Reservation reservation : reservations.values()) {
+            if (reservation.expiresAtMillis < now && reservation.state.compareAndSet(State.ACTIVE, State.BUSY)) {
+                finish(reservation);
+                expired++;
+            } else if (reservation.claimed && reservation.claimedUntilMillis < now && reservation.state.compareAndSet(State.BUSY, State.DONE)) {
+                // Claimed and never completed. Should that checkout still commit, its guarded decrement took real stock, and complete() finds it DONE
+                System.err.println("Warn: reservation " + reservation.id + " was left mid-checkout for over " + checkoutTimeoutMillis + "ms; releasing its holds.");
+                giveBack(reservation);
+                expired++;
+            }
+        }
+        if (expired > 0) {
+            System.out.println("Released " + expired + " expired stock reservation(s).");
+        }
+    }
+}
@@ -1,38 +1,76 @@
 package Model.ServiceImplementations;
 
-import Model.DataAccessObjectInterfaces.IBranchDAO;
-import Model.DataAccessObjectInterfaces.IDrinkDAO;
+import Model.DataAccessObjectImplementations.LedgerStockItemDAOImplementation;
 import Model.DataAccessObjectInterfaces.IStockItemDAO;
 import Model.DataEntities.Branch;
 import Model.DataEntities.Drink;
+import Model.DataEntities.LowStockEntry;
+import Model.DataEntities.OrderRequest;
 import Model.DataEntities.StockItem;
+import Model.DataEntities.StockReservation;
+import Model.ServiceInterfaces.IStockAlertListener;
 import Model.ServiceInterfaces.IStockService;
 import Model.UtilitiesandServerEntryPoint.DatabaseManager;
+import Model.UtilitiesandServerEntryPoint.TransactionRunner;
 
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class StockServiceImplementation extends UnicastRemoteObject implements IStockService {
     private final IStockItemDAO stockItemDAO;
-    private final IBranchDAO branchDAO;
-    private final IDrinkDAO drinkDAO;
-    public StockServiceImplementation(IStockItemDAO siDAO, IBranchDAO bDAO, IDrinkDAO dDAO) throws RemoteException{
+    private final ReferenceDataCache referenceData;
+    private final StockReservations reservations=StockReservations.fromSystemProperties();
+    private final StockAlertPublisher alerts=StockAlertPublisher.fromSystemProperties();
+    private final LowStockIndex lowStock=new LowStockIndex(alerts::publish);
+    private volatile Consumer<String> stockChanged=branchId->{};// Told the branch of every committed stock change made here
+    private final ThreadLocal<TakenRows> ledgerTaken=new ThreadLocal<>();// What the stock ledger reported for the decrement running on this thread
+
+    private static final class TakenRows {
+        final List<StockItem> rows;
+        final long stamp;
+
+        TakenRows(List<StockItem> rows,long stamp){
+            this.rows=rows;
+            this.stamp=stamp;
+        }
+    }
+
+    public StockServiceImplementation(IStockItemDAO siDAO, ReferenceDataCache referenceData) throws RemoteException{
         super();
         this.stockItemDAO=siDAO;
-        this.branchDAO=bDAO;
-        this.drinkDAO=dDAO;
+        this.referenceData=referenceData;
+        if(siDAO instanceof LedgerStockItemDAOImplementation){// Sales take no row locks there, so their levels come from the ledger itself
+            ((LedgerStockItemDAOImplementation)siDAO).onTaken(rows->ledgerTaken.set(new TakenRows(rows,lowStock.stamp())));
+        }
+        try{
+            List<StockItem> lowRows=new ArrayList<>();
+            for(LowStockEntry entry:stockItemDAO.findLowStock(null)){
+                lowRows.add(new StockItem(entry.getBranchId(),entry.getDrinkId(),entry.getQuantity(),entry.getMinimumThreshold()));
+            }
+            lowStock.load(lowRows);
+        }catch(SQLException e){
+            throw new RemoteException("DB error loading stock thresholds",e);
+        }
     }
-    private void validateBranchAndDrink(String branchID,String drinkID,Connection... conns) throws Exception, SQLException {
-        if(!branchDAO.findById(branchID,conns).isPresent()){
+    private void validateBranchAndDrink(String branchID,String drinkID) throws Exception, SQLException {
+        if(!referenceData.findBranch(branchID).isPresent()){
             throw new Exception("Branch "+branchID+" not found");
         }
-        if(!drinkDAO.findById(drinkID,conns).isPresent()){
+        if(!referenceData.findDrink(drinkID).isPresent()){
             throw new Exception("Drink "+drinkID+" not found");
         }
     }
@@ -43,9 +81,14 @@ public class StockServiceImplementation extends UnicastRemoteObject implements I
         }
         try{
             validateBranchAndDrink(branchId,drinkId);
-            StockItem item= stockItemDAO.findByBranchAndDrink(branchId,drinkId).orElse(new StockItem(branchId,drinkId,0,0));
-            item.setQuantity(quantity);
-            stockItemDAO.saveOrUpdate(item);
+            TransactionRunner.run("setStockLevel",conn->{// Row locked from the read to the commit, so the threshold kept and the level reported are current
+                StockItem before=lockedRow(branchId,drinkId,conn);
+                StockItem item=new StockItem(branchId,drinkId,quantity,before.getMinimumThreshold());
+                stockItemDAO.saveOrUpdate(item,conn);
+                reportLevels(List.of(item),lowStock.stamp());
+                changed(branchId);
+                return null;
+            });
             System.out.println("Stock level set for "+drinkId+" at "+branchId+" to "+quantity);
         }catch(SQLException e){
             throw new RemoteException("DB error setting stock level",e);
@@ -69,9 +112,14 @@ public class StockServiceImplementation extends UnicastRemoteObject implements I
         }
         try{
             validateBranchAndDrink(branchId,drinkId);
-            StockItem item=stockItemDAO.findByBranchAndDrink(branchId,drinkId).orElse(new StockItem(branchId,drinkId,0,0));
-            item.setMinimumThreshold(threshold);
-            stockItemDAO.saveOrUpdate(item);
+            TransactionRunner.run("setStockThreshold",conn->{
+                StockItem before=lockedRow(branchId,drinkId,conn);
+                StockItem item=new StockItem(branchId,drinkId,before.getQuantity(),threshold);
+                stockItemDAO.saveOrUpdate(item,conn);
+                reportLevels(List.of(item),lowStock.stamp());
+                changed(branchId);
+                return null;
+            });
             System.out.println("Threshold set for "+drinkId+" at "+branchId+" to "+threshold);
         }catch(SQLException e){
            throw new RemoteException("DB error setting threshold",e);
@@ -81,7 +129,7 @@ public class StockServiceImplementation extends UnicastRemoteObject implements I
     @Override
     public Map<String, Integer> getStockForBranch(String branchId) throws RemoteException, Exception {
         try{
-            if(!branchDAO.findById(branchId).isPresent()){
+            if(!referenceData.findBranch(branchId).isPresent()){
                 throw new Exception("Branch "+branchId+" not found");
             }
             return stockItemDAO.findByBranch(branchId).stream().collect(Collectors.toMap(StockItem::getDrinkId, StockItem::getQuantity));
@@ -98,43 +146,50 @@ public class StockServiceImplementation extends UnicastRemoteObject implements I
         if(sourceBranchId.equals(destinationBranchId)){
             throw new IllegalArgumentException("Source/Destination branches are the same");
         }
-        Connection conn=null;
         try{
-            conn= DatabaseManager.getConnection();
-            conn.setAutoCommit(false);
-            validateBranchAndDrink(sourceBranchId,drinkId,conn);
-            if(!branchDAO.findById(destinationBranchId,conn).isPresent()) {
+            validateBranchAndDrink(sourceBranchId,drinkId);
+            if(!referenceData.findBranch(destinationBranchId).isPresent()) {
                 throw new Exception("Destination branch " + destinationBranchId + " not found");
             }
-            StockItem source=stockItemDAO.findByBranchAndDrink(sourceBranchId,drinkId,conn).orElseThrow(()->new Exception("Stock for "+drinkId+" at "+sourceBranchId+" not found"));
-            if(source.getQuantity()<quantity){
-                throw new Exception("Insufficient stock at "+sourceBranchId+". Available: "+source.getQuantity());
-            }
-            source.setQuantity(source.getQuantity()-quantity);
-            stockItemDAO.saveOrUpdate(source,conn);
-            StockItem destination=stockItemDAO.findByBranchAndDrink(destinationBranchId,drinkId,conn).orElse(new StockItem(destinationBranchId,drinkId,0,source.getMinimumThreshold())); // Keep threshold from source or default
-            destination.setQuantity(destination.getQuantity()+quantity);
-            stockItemDAO.saveOrUpdate(destination,conn);
-            stockItemDAO.saveOrUpdate(destination,conn);
-            conn.commit();
-            System.out.println("Transferred "+quantity+" of "+drinkId+" from "+sourceBranchId+" to "+destinationBranchId);
-        }catch (Exception e){
-            if(conn!=null){
-                try{
-                    conn.rollback();
-                }catch (SQLException ex){
-                    throw e instanceof RemoteException? e:new RemoteException("Error transferring stock",e );
+            TransactionRunner.run("transferStock",conn->{
+                Map<String,Set<String>> rows=new TreeMap<>();
+                rows.put(sourceBranchId,Set.of(drinkId));
+                rows.put(destinationBranchId,Set.of(drinkId));
+                Map<String,Map<String,StockItem>> locked=lockStockRows(rows,conn);
+                StockItem source=locked.get(sourceBranchId).get(drinkId);
+                StockItem destination=locked.get(destinationBranchId).get(drinkId);
+                if(source==null){
+                    throw new Exception("Stock for "+drinkId+" at "+sourceBranchId+" not found");
                 }
-            }
-        }finally {
-            if(conn!=null){
-                try{
-                    conn.setAutoCommit(true);
-                    conn.close();
-                }catch(SQLException ex){
-
+                if(source.getQuantity()<quantity){
+                    throw new Exception("Insufficient stock at "+sourceBranchId+". Available: "+source.getQuantity());
                 }
-            }
+                // Written in branch order as well: with stock.engine=ledger the rows were not locked above, and opposing transfers must not deadlock
+                boolean created=false;
+                if(destinationBranchId.compareTo(sourceBranchId)<0){
+                    created=stockItemDAO.addStock(destinationBranchId,drinkId,quantity,conn);
+                }
+                if(!takeStock(sourceBranchId,Map.of(drinkId,quantity),locked.get(sourceBranchId),conn).isEmpty()){// Only possible with stock.engine=ledger
+                    throw new Exception("Insufficient stock at "+sourceBranchId+": sold to another order meanwhile.");
+                }
+                if(destinationBranchId.compareTo(sourceBranchId)>0){
+                    created=stockItemDAO.addStock(destinationBranchId,drinkId,quantity,conn);
+                }
+                StockItem received=new StockItem(destinationBranchId,drinkId,quantity,0);
+                if(created&&source.getMinimumThreshold()>0){
+                    // First stock of this drink at the destination: keep the threshold from the source
+                    received.setMinimumThreshold(source.getMinimumThreshold());
+                    stockItemDAO.saveOrUpdate(received,conn);
+                }else if(destination!=null){// With stock.engine=ledger this row was read unlocked, so a sale there meanwhile can make the level reported stale until its next change
+                    received=new StockItem(destinationBranchId,drinkId,destination.getQuantity()+quantity,destination.getMinimumThreshold());
+                }
+                reportLevels(List.of(received),lowStock.stamp());
+                changed(sourceBranchId,destinationBranchId);
+                return null;
+            });
+            System.out.println("Transferred "+quantity+" of "+drinkId+" from "+sourceBranchId+" to "+destinationBranchId);
+        }catch (Exception e){
+            throw e instanceof RemoteException? e:new RemoteException("Error transferring stock: "+e.getMessage(),e);
         }
     }
 
@@ -145,25 +200,41 @@ public class StockServiceImplementation extends UnicastRemoteObject implements I
             throw new IllegalArgumentException("Connection cannot be null for transactional sale processing");
         }
         try{
-            if(!branchDAO.findById(branchId,conn).isPresent()) {
+            if(!referenceData.findBranch(branchId).isPresent()) {
                 throw new Exception("Branch " + branchId + " not found.");
             }
             for(Map.Entry<String,Integer> entry:itemsSold.entrySet()){
                 String drinkID=entry.getKey();
-                int quantitySold=entry.getValue();
-                if(!drinkDAO.findById(drinkID,conn).isPresent()){
+                if(!referenceData.findDrink(drinkID).isPresent()){
                     throw new Exception("Drink "+drinkID+" not found");
                 }
-                if(quantitySold<=0){
+                if(entry.getValue()<=0){
                     throw new IllegalArgumentException("Quantity sold for "+drinkID+" must be positive.");
                 }
-                StockItem stock=stockItemDAO.findByBranchAndDrink(branchId,drinkID,conn).orElseThrow(()->new Exception("Stock for "+drinkID+" at "+branchId+" not found."));
-                if(stock.getQuantity()<quantitySold){
-                    throw new Exception("Insufficient stock for "+drinkID+" at "+branchId+". Available stock: "+stock.getQuantity()+", Required: "+quantitySold);
+            }
+            // Lock the rows first, in drink ID order, so two orders listing the same drinks in a different order queue up instead of deadlocking
+            Map<String,StockItem> stock=lockStockRows(Map.of(branchId,itemsSold.keySet()),conn).get(branchId);
+            List<String> shortDrinks=new ArrayList<>();
+            for(String drinkID:new TreeSet<>(itemsSold.keySet())){
+                StockItem item=stock.get(drinkID);
+                if(item==null){
+                    throw new Exception("Stock for "+drinkID+" at "+branchId+" not found.");
+                }
+                if(item.getQuantity()-reservations.held(branchId,drinkID)<itemsSold.get(drinkID)){// Stock held for carts is not for sale
+                    shortDrinks.add(drinkID);
                 }
-                stock.setQuantity(stock.getQuantity()-quantitySold);
-                stockItemDAO.saveOrUpdate(stock,conn);
             }
+            if(!shortDrinks.isEmpty()){
+                String drinkID=shortDrinks.get(0);
+                throw new Exception("Insufficient stock for "+drinkID+" at "+branchId+". Available stock: "+Math.max(0,stock.get(drinkID).getQuantity()-reservations.held(branchId,drinkID))+", Required: "+itemsSold.get(drinkID)
+                        +(shortDrinks.size()>1?" (also short: "+String.join(", ",shortDrinks.subList(1,shortDrinks.size()))+")":""));
+            }
+            // Every line in one batched round trip
+            List<String> soldMeanwhile=takeStock(branchId,itemsSold,stock,conn);
+            if(!soldMeanwhile.isEmpty()){// Only possible with stock.engine=ledger, which checks without row locks
+                throw new Exception("Insufficient stock for "+String.join(", ",soldMeanwhile)+" at "+branchId+": sold to another order meanwhile.");
+            }
+            changed(branchId);
             System.out.println("Stock decremented transactionally at "+branchId);
         }catch (SQLException e){
             throw new RemoteException("DB error processing the stock part of the sale.",e);
@@ -172,21 +243,296 @@ public class StockServiceImplementation extends UnicastRemoteObject implements I
     }
 
     @Override
-    public List<String> checkLowStockLevelsGlobally() throws RemoteException, Exception {
-        List<String> warnings=new ArrayList<>();
+    public List<String> processSalesTransactionally(List<OrderRequest> sales, Connection conn) throws RemoteException, Exception {
+        if(conn==null){
+            throw new IllegalArgumentException("Connection cannot be null for transactional sale processing");
+        }
+        try{
+            // Lock every stock row the whole batch touches once, then allocate in memory
+            Map<String,Set<String>> drinksByBranch=new HashMap<>();
+            for(OrderRequest sale:sales){
+                drinksByBranch.computeIfAbsent(sale.getBranchId(),k->new HashSet<>()).addAll(sale.getItems().keySet());
+            }
+            Map<String,Map<String,StockItem>> locked=lockStockRows(drinksByBranch,conn);
+            Map<String,Map<String,Integer>> available=new HashMap<>();
+            for(Map.Entry<String,Map<String,StockItem>> entry:locked.entrySet()){
+                Map<String,Integer> stock=new HashMap<>();
+                for(StockItem item:entry.getValue().values()){
+                    stock.put(item.getDrinkId(),item.getQuantity()-reservations.held(entry.getKey(),item.getDrinkId()));
+                }
+                available.put(entry.getKey(),stock);
+            }
+            List<String> failures=new ArrayList<>();
+            Map<String,Map<String,Integer>> taken=new TreeMap<>();
+            for(OrderRequest sale:sales){
+                String failure=checkSale(sale,available.get(sale.getBranchId()));
+                failures.add(failure);
+                if(failure==null){
+                    for(Map.Entry<String,Integer> line:sale.getItems().entrySet()){
+                        available.get(sale.getBranchId()).merge(line.getKey(),-line.getValue(),Integer::sum);
+                        taken.computeIfAbsent(sale.getBranchId(),k->new TreeMap<>()).merge(line.getKey(),line.getValue(),Integer::sum);
+                    }
+                }
+            }
+            // One batched decrement per branch for everything allocated
+            for(Map.Entry<String,Map<String,Integer>> entry:taken.entrySet()){
+                List<String> shortDrinks=takeStock(entry.getKey(),entry.getValue(),locked.get(entry.getKey()),conn);
+                if(!shortDrinks.isEmpty()){// Only possible with stock.engine=ledger; the whole batch fails and is retried or split by the caller
+                    throw new Exception("Insufficient stock for "+String.join(", ",shortDrinks)+" at "+entry.getKey()+": sold to another order meanwhile.");
+                }
+                changed(entry.getKey());
+            }
+            System.out.println("Stock decremented transactionally for "+(sales.size()-failures.stream().filter(f->f!=null).count())+" of "+sales.size()+" sales");
+            return failures;
+        }catch (SQLException e){
+            throw new RemoteException("DB error processing the stock part of the sales.",e);
+        }
+    }
+
+    @Override
+    public StockReservation reserveStock(String reservationId, String branchId, Map<String, Integer> items) throws RemoteException, Exception {
+        if(items==null||items.isEmpty()){
+            throw new IllegalArgumentException("Nothing to reserve.");
+        }
         try{
-            List<StockItem> lowItems=stockItemDAO.findAllLowStock();
-            for(StockItem item: lowItems){
-                Branch b=branchDAO.findById(item.getBranchId()).orElse(new Branch(item.getBranchId(),"Unknown","N/A"));
-                Drink d=drinkDAO.findById(item.getDrinkId()).orElse(new Drink(item.getDrinkId(),"Unknown","N/A",0));
-                warnings.add(String.format("LOW STOCK: Branch '%s' (%s) - Drink '%s' (%s). Qty: %d, Threshold: %d", b.getName(), b.getId(), d.getName(), d.getId(), item.getQuantity(), item.getMinimumThreshold()));
+            if(!referenceData.findBranch(branchId).isPresent()){
+                throw new Exception("Branch "+branchId+" not found");
+            }
+            for(Map.Entry<String,Integer> line:items.entrySet()){
+                if(!referenceData.findDrink(line.getKey()).isPresent()){
+                    throw new Exception("Drink "+line.getKey()+" not found");
+                }
+                if(line.getValue()==null||line.getValue()<0){
+                    throw new IllegalArgumentException("Reserved quantity for "+line.getKey()+" cannot be negative.");
+                }
             }
+            return TransactionRunner.run("reserveStock",conn->{// Held while the rows are locked, so a sale of them checks against the new hold or waits for it
+                Map<String,Integer> stock=new HashMap<>();
+                for(StockItem item:lockStockRows(Map.of(branchId,items.keySet()),conn).get(branchId).values()){
+                    stock.put(item.getDrinkId(),item.getQuantity());
+                }
+                return reservations.hold(reservationId,branchId,items,stock);
+            });
+        }catch(SQLException e){
+            throw new RemoteException("DB error reserving stock.",e);
+        }
+    }
+
+    @Override
+    public StockReservation extendReservation(String reservationId) throws RemoteException, Exception {
+        return reservations.extend(reservationId);
+    }
+
+    @Override
+    public void releaseReservation(String reservationId) throws RemoteException, Exception {
+        reservations.release(reservationId);
+    }
+
+    // Checkout of a reservation, for OrderServiceImplementation only (not remote, so a client cannot claim and abandon one, or drop holds
+    // without a sale): claim, take the stock inside the order transaction, then complete (sold = committed)
+    StockReservation claimReservation(String reservationId) throws Exception {
+        return reservations.claim(reservationId);
+    }
+
+    void processReservedSaleTransactionally(StockReservation reservation, Connection conn) throws RemoteException, Exception {
+        if(conn==null){
+            throw new IllegalArgumentException("Connection cannot be null for transactional sale processing");
+        }
+        // The lines were checked when they were reserved and are still held, so no per-line validation; the rows are locked for their
+        // levels only: the guarded batch decrement only fails if the stock itself was lowered since (set by hand, or sold by another server)
+        try{
+            String branchId=reservation.getBranchId();
+            Map<String,StockItem> locked=lockStockRows(Map.of(branchId,reservation.getItems().keySet()),conn).get(branchId);
+            List<String> shortDrinks=takeStock(branchId,reservation.getItems(),locked,conn);
+            if(!shortDrinks.isEmpty()){
+                throw new Exception("Stock for "+String.join(", ",shortDrinks)+" at "+branchId+" changed after it was reserved; please check the cart again.");
+            }
+            changed(branchId);
+            System.out.println("Reserved stock taken transactionally at "+reservation.getBranchId());
+        }catch (SQLException e){
+            throw new RemoteException("DB error processing the stock part of the sale.",e);
+        }
+    }
+
+    void completeReservation(String reservationId, boolean sold) {
+        reservations.complete(reservationId,sold);
+    }
+
+    // For BranchSequencerOrderIntake, which keeps each branch's stock in memory and checks orders against that itself:
+    // the rows it starts from (read on the primary), what carts hold, and the batch write of what it accepted
+    Map<String,StockItem> loadBranchStock(String branchId) throws SQLException{
+        try(Connection conn=DatabaseManager.getConnection()){
+            Map<String,StockItem> rows=new HashMap<>();
+            for(StockItem item:stockItemDAO.findByBranch(branchId,conn)){
+                rows.put(item.getDrinkId(),item);
+            }
+            return rows;
+        }
+    }
+
+    int held(String branchId,String drinkId){
+        return reservations.held(branchId,drinkId);
+    }
+
+    // No row locks up front: the guarded decrement refuses the batch (returns the short drinks) if the stock was lowered behind the
+    // sequencer's back, and the levels reported are the ones it left, not the sequencer's copy, which may be behind stock added since.
+    // Does not call the stock-change listener, which is there to tell the sequencer of everyone else's changes
+    List<String> takeSequencedStock(String branchId,Map<String,Integer> quantities,Connection conn) throws SQLException{
+        return takeStock(branchId,quantities,null,conn);
+    }
+
+    void onStockChanged(Consumer<String> listener){
+        stockChanged=listener;
+    }
+
+    // Every stock row lock a transaction needs is taken here, up front, in one canonical order: branch ID, then drink ID.
+    // Transactions that only lock this way may wait for each other but cannot deadlock. Returns the rows that exist, by branch then drink.
+    // (On MySQL a row that does not exist yet is only gap-locked, so two transactions creating the same row can still collide; TransactionRunner retries that.)
+    private Map<String,Map<String,StockItem>> lockStockRows(Map<String,? extends Collection<String>> drinksByBranch,Connection conn) throws SQLException{
+        Map<String,Map<String,StockItem>> locked=new TreeMap<>();
+        for(Map.Entry<String,? extends Collection<String>> entry:new TreeMap<>(drinksByBranch).entrySet()){
+            Map<String,StockItem> rows=new HashMap<>();
+            if(entry.getValue().isEmpty()){
+                locked.put(entry.getKey(),rows);
+                continue;
+            }
+            for(StockItem item:stockItemDAO.findForUpdate(entry.getKey(),new TreeSet<>(entry.getValue()),conn)){
+                rows.put(item.getDrinkId(),item);
+            }
+            locked.put(entry.getKey(),rows);
+        }
+        return locked;
+    }
+
+    // One row, locked; a blank one (no stock, no threshold) if the row does not exist yet
+    private StockItem lockedRow(String branchId,String drinkId,Connection conn) throws SQLException{
+        return stockItemDAO.findForUpdate(branchId,List.of(drinkId),conn).stream().findFirst().orElse(new StockItem(branchId,drinkId,0,0));
+    }
+
+    // Takes the lines in one guarded batch and reports the rows as it left them: with stock.engine=ledger as the ledger
+    // handed them over (stamped the moment its compare-and-set took them), else the rows locked beforehand minus what was taken, or,
+    // with locked null, the rows read back (the decrement holds their locks now). Returns the drinks that were short.
+    private List<String> takeStock(String branchId,Map<String,Integer> quantities,Map<String,StockItem> locked,Connection conn) throws SQLException{
+        List<String> shortDrinks;
+        TakenRows taken;
+        try{
+            shortDrinks=stockItemDAO.decrementStock(branchId,quantities,conn);
+        }finally{
+            taken=ledgerTaken.get();
+            ledgerTaken.remove();
+        }
+        if(!shortDrinks.isEmpty()){
+            return shortDrinks;
+        }
+        if(taken!=null){
+            reportLevels(taken.rows,taken.stamp);
+            return shortDrinks;
+        }
+        if(locked==null){
+            reportLevels(stockItemDAO.findForUpdate(branchId,new TreeSet<>(quantities.keySet()),conn),lowStock.stamp());
+            return shortDrinks;
+        }
+        List<StockItem> rows=new ArrayList<>();
+        for(String drinkId:quantities.keySet()){
+            StockItem before=locked.get(drinkId);
+            if(before!=null){
+                rows.add(new StockItem(branchId,drinkId,before.getQuantity()-quantities.get(drinkId),before.getMinimumThreshold()));
+            }
+        }
+        reportLevels(rows,lowStock.stamp());
+        return shortDrinks;
+    }
+
+    // Hands rows a transaction changed to the low-stock index once it commits, with a stamp taken while they were still locked
+    private void reportLevels(List<StockItem> rows,long stamp){
+        if(rows.isEmpty()){
+            return;
+        }
+        if(!TransactionRunner.inTransaction()){// The caller runs the transaction itself, so there is no commit to wait for
+            rows.forEach(row->lowStock.update(row,stamp));
+            return;
+        }
+        TransactionRunner.afterCompletion(committed->{
+            if(committed){
+                rows.forEach(row->lowStock.update(row,stamp));
+            }
+        });
+    }
+
+    private void changed(String... branchIds){
+        if(!TransactionRunner.inTransaction()){
+            Arrays.asList(branchIds).forEach(stockChanged);
+            return;
+        }
+        TransactionRunner.afterCompletion(committed->{
+            if(committed){
+                Arrays.asList(branchIds).forEach(stockChanged);
+            }
+        });
+    }
+
+    // Why a sale cannot be served from the remaining stock, or null if it can; also used by BranchSequencerOrderIntake
+    String checkSale(OrderRequest sale,Map<String,Integer> stock) throws SQLException{
+        if(!referenceData.findBranch(sale.getBranchId()).isPresent()){
+            return "Branch "+sale.getBranchId()+" not found.";
+        }
+        for(Map.Entry<String,Integer> line:sale.getItems().entrySet()){
+            String drinkID=line.getKey();
+            if(!referenceData.findDrink(drinkID).isPresent()){
+                return "Drink "+drinkID+" not found";
+            }
+            if(line.getValue()==null||line.getValue()<=0){
+                return "Quantity sold for "+drinkID+" must be positive.";
+            }
+            Integer have=stock.get(drinkID);
+            if(have==null){
+                return "Stock for "+drinkID+" at "+sale.getBranchId()+" not found.";
+            }
+            if(have<line.getValue()){
+                return "Insufficient stock for "+drinkID+" at "+sale.getBranchId()+". Available stock: "+Math.max(0,have)+", Required: "+line.getValue();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<LowStockEntry> getLowStockEntries(String branchId) throws RemoteException, Exception {
+        try{
+            if(branchId!=null&&!referenceData.findBranch(branchId).isPresent()){
+                throw new Exception("Branch "+branchId+" not found");
+            }
+            List<LowStockEntry> entries=new ArrayList<>();
+            for(StockItem item: lowStock.lowRows(branchId)){// Maintained as stock changes, and names come from the reference cache, so no queries
+                Branch b=referenceData.findBranch(item.getBranchId()).orElse(new Branch(item.getBranchId(),"Unknown","N/A"));
+                Drink d=referenceData.findDrink(item.getDrinkId()).orElse(new Drink(item.getDrinkId(),"Unknown","N/A",0));
+                entries.add(new LowStockEntry(b.getId(),b.getName(),d.getId(),d.getName(),item.getQuantity(),item.getMinimumThreshold()));
+            }
+            return entries;
         }catch(SQLException e){
             throw new RemoteException("DB error checking low stock",e);
         }
+    }
+
+    @Override
+    public List<String> checkLowStockLevelsGlobally() throws RemoteException, Exception {
+        List<String> warnings=getLowStockEntries(null).stream().map(LowStockEntry::toString).collect(Collectors.toList());
         if(warnings.isEmpty()){
             warnings.add("All stock levels are currently above threshold or no thresholds are set.");
         }
         return warnings;
     }
+
+    @Override
+    public void addStockAlertListener(IStockAlertListener listener) throws RemoteException {
+        if(listener==null){
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        alerts.add(listener);
+        System.out.println("Stock alert listener subscribed");
+    }
+
+    @Override
+    public void removeStockAlertListener(IStockAlertListener listener) throws RemoteException {
+        alerts.remove(listener);
+    }
 }
@@ -1,16 +1,27 @@
 package Model.ServiceInterfaces;
 
 import Model.DataEntities.Order;
+import Model.DataEntities.OrderPage;
+import Model.DataEntities.OrderRequest;
+import Model.DataEntities.OrderResult;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
 public interface IOrderService extends Remote {
     Order placeOrder(String customerId, String branchId, Map<String, Integer> itemsToOrder) throws RemoteException, Exception; // itemsToOrder: DrinkID -> Quantity
+    Order placeOrder(String customerId, String branchId, Map<String, Integer> itemsToOrder, String idempotencyKey) throws RemoteException, Exception; // Retrying with the same key returns the original order instead of placing another
+    Order placeReservedOrder(String customerId, String reservationId, String idempotencyKey) throws RemoteException, Exception; // Checks out the items held by IStockService.reserveStock; key may be null
+    List<OrderResult> placeOrders(List<OrderRequest> orders) throws RemoteException, Exception; // One transaction; results in request order, a rejected order does not abort the rest
     Order getOrderById(String orderId) throws RemoteException,Exception;
     List<Order> getOrdersByBranch(String branchId) throws RemoteException,Exception;
     List<Order> getOrdersByCustomer(String customerId) throws RemoteException, Exception;
+    // Paged history, oldest first: cursor null for the first page, then the previous page's nextCursor; from (inclusive) and to (exclusive) may be null
+    OrderPage getOrdersByBranch(String branchId, String cursor, int pageSize, LocalDateTime from, LocalDateTime to) throws RemoteException, Exception;
+    OrderPage getOrdersByCustomer(String customerId, String cursor, int pageSize, LocalDateTime from, LocalDateTime to) throws RemoteException, Exception;
+    RemoteIterator<Order> exportOrders(String branchId, LocalDateTime from, LocalDateTime to) throws RemoteException, Exception; // With items; branchId null = every branch
 
 }
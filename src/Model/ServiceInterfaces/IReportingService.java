@@ -1,7 +1,10 @@
 package Model.ServiceInterfaces;
 
+import Model.DataEntities.Order;
+
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -11,5 +14,6 @@ public interface IReportingService extends Remote {
     double getTotalBusinessSales() throws RemoteException,Exception;
     Map<String, String> generateBranchSalesReport(String branchId) throws RemoteException, Exception; // Detailed report
     Map<String, String> generateOverallBusinessReport() throws RemoteException, Exception; // Detailed overall report
+    RemoteIterator<Order> streamSalesLedger(String branchId, LocalDateTime from, LocalDateTime to) throws RemoteException, Exception; // Order headers only (no items); branchId null = every branch
 
 }
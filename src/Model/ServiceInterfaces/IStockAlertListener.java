@@ -0,0 +1,12 @@
+package Model.ServiceInterfaces;
+
+import Model.DataEntities.LowStockEvent;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+// Implemented by clients (exported as a remote object) and registered with IStockService.addStockAlertListener.
+// Called from a server thread once the change has committed; a listener that throws RemoteException is unsubscribed.
+public interface IStockAlertListener extends Remote {
+    void onLowStockEvent(LowStockEvent event) throws RemoteException;
+}
@@ -1,5 +1,9 @@
 package Model.ServiceInterfaces;
 
+import Model.DataEntities.LowStockEntry;
+import Model.DataEntities.OrderRequest;
+import Model.DataEntities.StockReservation;
+
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.sql.Connection;
@@ -13,5 +17,15 @@ public interface IStockService extends Remote {
     Map<String,Integer> getStockForBranch(String branchId) throws RemoteException,Exception; // DrinkID -> Quantity
     void transferStock(String sourceBranchId,String destinationBranchId,String drinkId,int quantity) throws RemoteException,Exception;
     void processSaleTransactionally(String branchId, Map<String, Integer> itemsSold, Connection conn) throws RemoteException, Exception; // For use within OrderService transaction
-    List<String> checkLowStockLevelsGlobally() throws RemoteException, Exception;
+    List<String> processSalesTransactionally(List<OrderRequest> sales, Connection conn) throws RemoteException, Exception; // Bulk version: per sale null if stock was taken, else why not
+    List<LowStockEntry> getLowStockEntries(String branchId) throws RemoteException, Exception; // branchId null for every branch; by branch, then drink
+    List<String> checkLowStockLevelsGlobally() throws RemoteException, Exception; // getLowStockEntries(null) as display lines
+    // Push instead of polling: the listener is told whenever a stock row falls below its threshold or recovers
+    void addStockAlertListener(IStockAlertListener listener) throws RemoteException;
+    void removeStockAlertListener(IStockAlertListener listener) throws RemoteException;
+    // Cart holds: reservationId null starts a reservation; each listed drink is held at exactly that quantity (0 drops it). Holds expire unless used or extended.
+    // A reservation is checked out with IOrderService.placeReservedOrder.
+    StockReservation reserveStock(String reservationId, String branchId, Map<String, Integer> items) throws RemoteException, Exception;
+    StockReservation extendReservation(String reservationId) throws RemoteException, Exception;
+    void releaseReservation(String reservationId) throws RemoteException, Exception;
 }
@@ -0,0 +1,13 @@
+package Model.ServiceInterfaces;
+
+import java.io.Serializable;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+// Server-side cursor returned by the streaming/export calls, so a large result crosses RMI a chunk at a time instead of as one huge list.
+// Call next() until it returns an empty list, or close() to stop early. The server closes an iterator that is left idle longer than its lease.
+public interface RemoteIterator<T extends Serializable> extends Remote {
+    List<T> next() throws RemoteException, Exception; // Next chunk; empty once everything has been read (the iterator is then closed)
+    void close() throws RemoteException;
+}
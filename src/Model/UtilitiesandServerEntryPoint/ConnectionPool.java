@@ -0,0 +1,389 @@
+package Model.UtilitiesandServerEntryPoint;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounded pool of physical JDBC connections. Borrowers get a proxy whose close() hands the connection back to the pool.
+public class ConnectionPool implements ConnectionPoolMXBean {
+
+    public static class Settings {
+        final int minSize;
+        final int maxSize;
+        final long idleTimeoutMillis;
+        final long borrowTimeoutMillis;
+        final int validationTimeoutSeconds;
+        final long validationBypassMillis;
+        final long housekeepingIntervalMillis;
+        final int statementCacheSize;
+        final long leakDetectionThresholdMillis;
+
+        public Settings(int minSize, int maxSize, long idleTimeoutMillis, long borrowTimeoutMillis,
+                        int validationTimeoutSeconds, long validationBypassMillis, long housekeepingIntervalMillis,
+                        int statementCacheSize, long leakDetectionThresholdMillis) {
+            if (maxSize <= 0 || minSize < 0 || minSize > maxSize) {
+                throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+            }
+            this.minSize = minSize;
+            this.maxSize = maxSize;
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            this.borrowTimeoutMillis = borrowTimeoutMillis;
+            this.validationTimeoutSeconds = validationTimeoutSeconds;
+            this.validationBypassMillis = validationBypassMillis;
+            this.housekeepingIntervalMillis = housekeepingIntervalMillis;
+            this.statementCacheSize = statementCacheSize;
+            this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+        }
+
+        // Reads e.g. db.pool.maxSize, db.pool.borrowTimeoutMs ... falling back to the defaults below
+        public static Settings fromSystemProperties(String prefix) {
+            return new Settings(
+                    Integer.getInteger(prefix + "minSize", 2),
+                    Integer.getInteger(prefix + "maxSize", 10),
+                    Long.getLong(prefix + "idleTimeoutMs", 300_000L),
+                    Long.getLong(prefix + "borrowTimeoutMs", 5_000L),
+                    Integer.getInteger(prefix + "validationTimeoutSec", 2),
+                    Long.getLong(prefix + "validationBypassMs", 500L),
+                    Long.getLong(prefix + "housekeepingIntervalMs", 30_000L),
+                    Integer.getInteger(prefix + "statementCacheSize", 32),
+                    Long.getLong(prefix + "leakDetectionThresholdMs", 60_000L));
+        }
+    }
+
+    private final String name;
+    private final String url;
+    private final String user;
+    private final String password;
+    private final Settings settings;
+
+    private final Semaphore permits; // Fair, so waiting borrowers are served in arrival order
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final Set<PooledConnection> allConnections = ConcurrentHashMap.newKeySet(); // Walked by the leak check
+    private final PreparedStatementCache.Counters statementCounters = new PreparedStatementCache.Counters();
+    private final LatencyHistogram borrowLatency = new LatencyHistogram();
+    private final LongAdder borrowTimeouts = new LongAdder();
+    private final LongAdder leaksDetected = new LongAdder();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    public ConnectionPool(String name, String url, String user, String password, Settings settings) {
+        this.name = name;
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.settings = settings;
+        this.permits = new Semaphore(settings.maxSize, true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, settings.housekeepingIntervalMillis,
+                settings.housekeepingIntervalMillis, TimeUnit.MILLISECONDS);
+        MetricsRegistry.register("type=ConnectionPool,name=" + name, this);
+        fillToMinimum();
+    }
+
+    public Connection borrow() throws SQLException {
+        Connection conn = tryBorrow(settings.borrowTimeoutMillis);
+        if (conn == null) {
+            throw new SQLTransientConnectionException("Timed out after " + settings.borrowTimeoutMillis + "ms waiting for a connection from pool " + name);
+        }
+        return conn;
+    }
+
+    // Waits at most timeoutMillis (0: only takes a connection that is free right now); null if none became free.
+    // Throws only when a connection could not be opened or the pool is closed.
+    public Connection tryBorrow(long timeoutMillis) throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool " + name + " is closed");
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                borrowTimeouts.increment();
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection from pool " + name, e);
+        }
+        try {
+            PooledConnection pooled = acquire(deadline);
+            if (pooled == null) {
+                permits.release();
+                return null;
+            }
+            Connection leased = pooled.lease();
+            borrowLatency.record(System.nanoTime() - start);
+            return leased;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // Caller holds a permit, so either an idle connection exists or there is room to open a new one. null if the deadline passed
+    private PooledConnection acquire(long deadline) throws SQLException {
+        while (true) {
+            PooledConnection pooled = idle.pollFirst();
+            if (pooled != null) {
+                if (isUsable(pooled)) {
+                    return pooled;
+                }
+                discard(pooled);
+                continue;
+            }
+            PooledConnection created = tryCreate(settings.maxSize);
+            if (created != null) {
+                return created;
+            }
+            // The housekeeper is momentarily holding the slot; wait for the connection to show up in the idle deque
+            long remaining = deadline - System.nanoTime();
+            try {
+                pooled = remaining > 0 ? idle.pollFirst(remaining, TimeUnit.NANOSECONDS) : null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a connection from pool " + name, e);
+            }
+            if (pooled == null) {
+                borrowTimeouts.increment();
+                return null;
+            }
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            discard(pooled);
+        }
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        if (System.nanoTime() - pooled.lastReturnedNanos < TimeUnit.MILLISECONDS.toNanos(settings.validationBypassMillis)) {
+            return true; // Returned a moment ago, skip the round trip
+        }
+        try {
+            return pooled.physical.isValid(settings.validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection tryCreate(int limit) throws SQLException {
+        while (true) {
+            int current = totalConnections.get();
+            if (current >= limit) {
+                return null;
+            }
+            if (totalConnections.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+        try {
+            PooledConnection created = new PooledConnection(DriverManager.getConnection(url, user, password));
+            allConnections.add(created);
+            return created;
+        } catch (SQLException | RuntimeException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        }
+    }
+
+    void release(PooledConnection pooled) {
+        pooled.borrowedAtNanos = 0;
+        try {
+            Connection physical = pooled.physical;
+            if (!physical.getAutoCommit()) { // Borrower left a transaction open
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if (closed) {
+                discard(pooled);
+            } else {
+                pooled.lastReturnedNanos = System.nanoTime();
+                idle.offerFirst(pooled); // LIFO keeps the hot connections hot and lets the rest age out
+            }
+        } catch (SQLException e) {
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        allConnections.remove(pooled);
+        if (pooled.statements != null) {
+            pooled.statements.closeAll();
+        }
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            /* ignore */
+        }
+    }
+
+    private void housekeep() {
+        try {
+            long now = System.nanoTime();
+            long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(settings.idleTimeoutMillis);
+            for (PooledConnection pooled : idle) {
+                if (totalConnections.get() <= settings.minSize) {
+                    break;
+                }
+                if (now - pooled.lastReturnedNanos > idleTimeoutNanos && idle.remove(pooled)) {
+                    discard(pooled);
+                }
+            }
+            detectLeaks(now);
+            fillToMinimum();
+        } catch (RuntimeException e) {
+            System.err.println("Connection pool " + name + " housekeeping failed: " + e.getMessage());
+        }
+    }
+
+    // A connection held longer than the threshold is reported once per borrow
+    private void detectLeaks(long now) {
+        long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(settings.leakDetectionThresholdMillis);
+        if (thresholdNanos <= 0) {
+            return;
+        }
+        for (PooledConnection pooled : allConnections) {
+            long borrowedAt = pooled.borrowedAtNanos;
+            if (borrowedAt != 0 && !pooled.leakReported && now - borrowedAt > thresholdNanos) {
+                pooled.leakReported = true;
+                leaksDetected.increment();
+                System.err.println("Warn: possible connection leak in pool " + name + ": connection held by thread '"
+                        + pooled.borrowerThread + "' for " + TimeUnit.NANOSECONDS.toMillis(now - borrowedAt) + "ms");
+            }
+        }
+    }
+
+    private void fillToMinimum() {
+        try {
+            PooledConnection created;
+            while (!closed && (created = tryCreate(settings.minSize)) != null) {
+                created.lastReturnedNanos = System.nanoTime();
+                idle.offerLast(created);
+            }
+        } catch (SQLException e) {
+            System.err.println("Connection pool " + name + " could not open minimum connections: " + e.getMessage());
+        }
+    }
+
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+        MetricsRegistry.unregister("type=ConnectionPool,name=" + name);
+        System.out.println("Connection pool " + name + " closed. " + describeStatementCache());
+    }
+
+    public String describeStatementCache() {
+        return "Statement cache hits=" + getStatementCacheHits() + ", misses=" + getStatementCacheMisses()
+                + ", evictions=" + getStatementCacheEvictions();
+    }
+
+    @Override public String getName() { return name; }
+    @Override public int getTotalConnections() { return totalConnections.get(); }
+    @Override public int getIdleConnections() { return idle.size(); }
+    @Override public int getActiveConnections() { return settings.maxSize - permits.availablePermits(); }
+    @Override public int getWaitingBorrowers() { return permits.getQueueLength(); }
+    @Override public int getMaxSize() { return settings.maxSize; }
+    @Override public long getBorrowCount() { return borrowLatency.getCount(); }
+    @Override public long getBorrowTimeouts() { return borrowTimeouts.sum(); }
+    @Override public double getBorrowLatencyMeanMicros() { return borrowLatency.getMeanMicros(); }
+    @Override public long getBorrowLatencyP50Micros() { return borrowLatency.getPercentileMicros(50); }
+    @Override public long getBorrowLatencyP99Micros() { return borrowLatency.getPercentileMicros(99); }
+    @Override public long getBorrowLatencyMaxMicros() { return borrowLatency.getMaxMicros(); }
+    @Override public long[] getBorrowLatencyBuckets() { return borrowLatency.getBucketCounts(); }
+    @Override public long getLeakedConnectionsDetected() { return leaksDetected.sum(); }
+    @Override public long getStatementCacheHits() { return statementCounters.hits.sum(); }
+    @Override public long getStatementCacheMisses() { return statementCounters.misses.sum(); }
+    @Override public long getStatementCacheEvictions() { return statementCounters.evictions.sum(); }
+
+    // One physical connection; each borrow gets a fresh handle so a stale reference cannot touch it after close()
+    final class PooledConnection {
+        final Connection physical;
+        final PreparedStatementCache statements; // null when caching is disabled
+        volatile long lastReturnedNanos;
+        volatile long borrowedAtNanos; // 0 while idle
+        volatile String borrowerThread;
+        volatile boolean leakReported;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statements = settings.statementCacheSize > 0
+                    ? new PreparedStatementCache(physical, settings.statementCacheSize, statementCounters) : null;
+        }
+
+        Connection lease() {
+            borrowedAtNanos = System.nanoTime();
+            borrowerThread = Thread.currentThread().getName();
+            leakReported = false;
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Handle(this));
+        }
+    }
+
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean returned;
+
+        Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + name + "]" + (returned ? "(returned)" : pooled.physical.toString());
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("Connection has already been returned to pool " + name);
+            }
+            // Only the plain prepareStatement(sql) form is cached; the DAOs use nothing else
+            if (pooled.statements != null && "prepareStatement".equals(method.getName()) && args != null && args.length == 1) {
+                return pooled.statements.prepare((String) args[0]);
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
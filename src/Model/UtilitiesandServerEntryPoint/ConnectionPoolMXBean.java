@@ -0,0 +1,21 @@
+package Model.UtilitiesandServerEntryPoint;
+
+public interface ConnectionPoolMXBean {
+    String getName();
+    int getActiveConnections();
+    int getIdleConnections();
+    int getWaitingBorrowers();
+    int getTotalConnections();
+    int getMaxSize();
+    long getBorrowCount();
+    long getBorrowTimeouts();
+    double getBorrowLatencyMeanMicros();
+    long getBorrowLatencyP50Micros();
+    long getBorrowLatencyP99Micros();
+    long getBorrowLatencyMaxMicros();
+    long[] getBorrowLatencyBuckets(); // Bucket i counts borrows that waited less than 2^i microseconds
+    long getLeakedConnectionsDetected();
+    long getStatementCacheHits();
+    long getStatementCacheMisses();
+    long getStatementCacheEvictions();
+}
@@ -3,9 +3,20 @@ package Model.UtilitiesandServerEntryPoint;
 import java.sql.*;
 
 public class DatabaseManager {
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/drink_enterprise_db?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true";
-    private static final String DB_USER="root";
-    private static final String DB_PASSWORD="200517";
+    // Lets the server swap MySQL for another backend (the in-memory DAOs) without the services noticing
+    public interface ConnectionSource{
+        Connection getConnection() throws SQLException;
+    }
+
+    private static final String DB_URL = System.getProperty("db.url", "jdbc:mysql://localhost:3306/drink_enterprise_db?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true&useServerPrepStmts=true&useCursorFetch=true&rewriteBatchedStatements=true");
+    private static final String DB_USER=System.getProperty("db.user", "root");
+    private static final String DB_PASSWORD=System.getProperty("db.password", "200517");
+
+    private static final String REPLICA_URL=System.getProperty("db.replica.url"); // Unset means every read goes to the primary
+
+    private static volatile ConnectionPool pool; // Created on first use so nothing connects until a DAO needs it
+    private static volatile ReplicaRouter replicaRouter;
+    private static volatile ConnectionSource overrideSource;
 
     static{
         try{
@@ -16,8 +27,86 @@ public class DatabaseManager {
         }
     }
 
+    private static ConnectionPool getPool(){
+        ConnectionPool current=pool;
+        if(current==null){
+            synchronized (DatabaseManager.class){
+                current=pool;
+                if(current==null){
+                    current=new ConnectionPool("primary",DB_URL,DB_USER,DB_PASSWORD,ConnectionPool.Settings.fromSystemProperties("db.pool."));
+                    pool=current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static ReplicaRouter getReplicaRouter(){
+        if(REPLICA_URL==null){
+            return null;
+        }
+        ReplicaRouter current=replicaRouter;
+        if(current==null){
+            synchronized (DatabaseManager.class){
+                current=replicaRouter;
+                if(current==null){
+                    ConnectionPool replicaPool=new ConnectionPool("replica",REPLICA_URL,
+                            System.getProperty("db.replica.user",DB_USER),System.getProperty("db.replica.password",DB_PASSWORD),
+                            ConnectionPool.Settings.fromSystemProperties("db.replica.pool."));
+                    current=new ReplicaRouter(replicaPool,Long.getLong("db.replica.maxLagSeconds",5L),Long.getLong("db.replica.checkIntervalMs",5_000L));
+                    replicaRouter=current;
+                }
+            }
+        }
+        return current;
+    }
+
+    public static void useConnectionSource(ConnectionSource source){
+        overrideSource=source;
+    }
+
+    public static boolean isUsingConnectionSource(){
+        return overrideSource!=null;
+    }
+
+    // Borrows from the pool; closing the returned connection gives it back instead of closing the socket
     public static Connection getConnection() throws SQLException{
-        return DriverManager.getConnection(DB_URL,DB_USER,DB_PASSWORD);
+        ConnectionSource source=overrideSource;
+        if(source!=null){
+            return source.getConnection();
+        }
+        return getPool().borrow();
+    }
+
+    // For reads outside a transaction: the replica when one is configured and healthy, otherwise the primary
+    public static Connection getReadConnection() throws SQLException{
+        if(overrideSource!=null){
+            return getConnection();
+        }
+        ReplicaRouter router=getReplicaRouter();
+        if(router!=null){
+            Connection replica=router.borrowOrNull();
+            if(replica!=null){
+                return replica;
+            }
+        }
+        return getConnection();
+    }
+
+    public static String getStatementCacheStats(){
+        ConnectionPool current=pool;
+        return current==null? "Statement cache not in use yet" : current.describeStatementCache();
+    }
+
+    public static synchronized void shutdown(){
+        if(replicaRouter!=null){
+            replicaRouter.close();
+            replicaRouter=null;
+        }
+        if(pool!=null){
+            pool.close();
+            pool=null;
+        }
     }
 
     public static void closeQuietly(ResultSet rs, Statement stmt, Connection conn) {
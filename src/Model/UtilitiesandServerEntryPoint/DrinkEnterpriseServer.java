@@ -24,25 +24,50 @@ public class DrinkEnterpriseServer {
     public static void main(String[] args) {
         try {
             System.out.println("Starting Drink Enterprise RMI Server (JDBC Backend with BCrypt)...");
-
             // Start RMI registry
             Registry registry = LocateRegistry.createRegistry(RMI_PORT);
             System.out.println("RMI Registry created/found on port " + RMI_PORT);
 
-            // Initialize DAO implementations
-            IDrinkDAO drinkDAO = new DrinkDAOImplementation();
-            IBranchDAO branchDAO = new BranchDAOImplementation();
-            IStockItemDAO stockItemDAO = new StockItemDAOImplementation();
-            IUserDAO userDAO = new UserDAOImplementation();
-            IOrderDAO orderDAO = new OrderDAOImplementation();
-
-            // Initialize service implementations
-            DrinkServiceImplementation drinkService = new DrinkServiceImplementation(drinkDAO, stockItemDAO);
-            BranchServiceImplementation branchService = new BranchServiceImplementation(branchDAO);
-            StockServiceImplementation stockService = new StockServiceImplementation(stockItemDAO, branchDAO, drinkDAO);
-            OrderServiceImplementation orderService = new OrderServiceImplementation(orderDAO, stockService, drinkDAO, branchDAO);
+            // Initialize DAO implementations (-Ddb.backend=memory runs without MySQL, e.g. for service-layer load tests)
+            IDrinkDAO drinkDAO;
+            IBranchDAO branchDAO;
+            IStockItemDAO stockItemDAO;
+            IUserDAO userDAO;
+            IOrderDAO orderDAO;
+            if ("memory".equalsIgnoreCase(System.getProperty("db.backend", "mysql"))) {
+                InMemoryDatabase memoryDatabase = new InMemoryDatabase();
+                DatabaseManager.useConnectionSource(memoryDatabase::newConnection);
+                drinkDAO = new InMemoryDrinkDAOImplementation(memoryDatabase);
+                branchDAO = new InMemoryBranchDAOImplementation(memoryDatabase);
+                stockItemDAO = new InMemoryStockItemDAOImplementation(memoryDatabase);
+                userDAO = new InMemoryUserDAOImplementation(memoryDatabase);
+                orderDAO = new InMemoryOrderDAOImplementation(memoryDatabase);
+                System.out.println("Using the in-memory backend; nothing is persisted.");
+            } else {
+                new SchemaMigrator().migrate(); // Creates/upgrades tables and indexes before anything queries them
+                drinkDAO = new DrinkDAOImplementation();
+                branchDAO = new BranchDAOImplementation();
+                stockItemDAO = new StockItemDAOImplementation();
+                userDAO = new UserDAOImplementation();
+                orderDAO = new OrderDAOImplementation();
+            }
+
+            if ("ledger".equalsIgnoreCase(System.getProperty("stock.engine", "database"))) {
+                stockItemDAO = LedgerStockItemDAOImplementation.fromSystemProperties(stockItemDAO); // Stock served from memory, written through to stock_items
+            }
+
+            // Initialize service implementations (one reference-data cache shared by all of them so invalidations are seen everywhere)
+            ReferenceDataCache referenceData = new ReferenceDataCache(drinkDAO, branchDAO);
+            DrinkServiceImplementation drinkService = new DrinkServiceImplementation(drinkDAO, stockItemDAO, referenceData);
+            BranchServiceImplementation branchService = new BranchServiceImplementation(branchDAO, referenceData);
+            StockServiceImplementation stockService = new StockServiceImplementation(stockItemDAO, referenceData);
+            OrderServiceImplementation orderService = new OrderServiceImplementation(orderDAO, stockService, referenceData);
             ReportingServiceImplementation reportingService = new ReportingServiceImplementation(orderDAO, branchDAO);
             AuthServiceImplementation authService = new AuthServiceImplementation(userDAO);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                orderService.shutdown(); // Drain queued orders while the pool is still open
+                DatabaseManager.shutdown();
+            }, "server-shutdown"));
 
             // Set up initial data
             setupInitialData(drinkService, branchService, stockService, authService, userDAO, branchDAO, drinkDAO);
@@ -0,0 +1,35 @@
+package Model.UtilitiesandServerEntryPoint;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+// Registers MBeans on the platform server so jconsole/VisualVM can read them under the "DrinkEnterprise" domain
+public class MetricsRegistry {
+    public static final String DOMAIN = "DrinkEnterprise";
+
+    public static void register(String keyProperties, Object mbean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ":" + keyProperties);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(mbean, name);
+        } catch (Exception e) {
+            System.err.println("Warn: could not register MBean " + keyProperties + ": " + e.getMessage());
+        }
+    }
+
+    public static void unregister(String keyProperties) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ":" + keyProperties);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            /* ignore */
+        }
+    }
+}
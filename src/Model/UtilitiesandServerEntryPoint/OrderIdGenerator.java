@@ -0,0 +1,59 @@
+package Model.UtilitiesandServerEntryPoint;
+
+// Snowflake-style order IDs: 42 bits of milliseconds since 2024-01-01, 10 bits of node ID (server.nodeId, unique per
+// server instance) and a 12-bit per-millisecond sequence, written as 13 fixed-width Crockford base32 characters.
+// The string order is the numeric order, so new orders append at the right edge of the orders primary key
+// instead of splitting pages all over it. IDs from before this generator ("ORD-" + random UUID part) do not follow that order.
+public class OrderIdGenerator {
+    public static final String PREFIX = "ORD-";
+    private static final long EPOCH_MILLIS = 1_704_067_200_000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+    private static final int ENCODED_LENGTH = 13; // ceil(64 / 5)
+    private static final char[] CROCKFORD = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray(); // Ascending ASCII, so string order = numeric order
+
+    private final long nodeId;
+    private long lastMillis = -1; // Guarded by this
+    private long sequence;        // Guarded by this
+
+    public OrderIdGenerator(long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("server.nodeId must be between 0 and " + MAX_NODE_ID + ", was " + nodeId);
+        }
+        this.nodeId = nodeId;
+    }
+
+    public static OrderIdGenerator fromSystemProperties() {
+        return new OrderIdGenerator(Long.getLong("server.nodeId", 0L));
+    }
+
+    public String nextId() {
+        long millis;
+        long seq;
+        synchronized (this) {
+            long now = System.currentTimeMillis() - EPOCH_MILLIS;
+            if (now > lastMillis) {
+                lastMillis = now;
+                sequence = 0;
+            } else if (++sequence > MAX_SEQUENCE) {
+                // 4096 IDs in one millisecond, or the clock went backwards: borrow the next millisecond rather than repeat or wait
+                lastMillis++;
+                sequence = 0;
+            }
+            millis = lastMillis;
+            seq = sequence;
+        }
+        return PREFIX + encode((millis << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | seq);
+    }
+
+    private static String encode(long value) {
+        char[] out = new char[ENCODED_LENGTH];
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            out[i] = CROCKFORD[(int) (value & 31)];
+            value >>>= 5;
+        }
+        return new String(out);
+    }
+}
@@ -0,0 +1,294 @@
+package Model.UtilitiesandServerEntryPoint;
+
+import Model.DataEntities.Order;
+import Model.DataEntities.OrderItem;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Write-ahead log of accepted orders in a fixed-size memory-mapped file, used as a ring.
+// Layout: a header {magic, version, checkpoint position, checkpoint sequence}, then records {payload length, CRC32 of
+// sequence + payload, sequence, payload}. Every record's sequence is one more than the last, so recovery scans forward from
+// the checkpoint and stops at the first record that is torn (bad CRC) or left over from an earlier lap (old sequence).
+// A record that would not fit before the end of the file (with room to spare for a wrap marker) goes to the front instead,
+// behind a wrap marker {-1, CRC32 of sequence, sequence of that record} left where it would have gone; the front is only
+// written over once the checkpoint has moved past it. Version 1 files (never wrapped) are read as they are.
+public class OrderJournal implements Closeable {
+    private static final int MAGIC = 0x4F524A31; // "ORJ1"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_OVERHEAD = 16; // Also the size of a wrap marker
+    private static final int WRAP_MARKER = -1;
+
+    // Orders read for replay, and where the checkpoint moves once they are in the database
+    public static final class Batch {
+        private final List<Order> orders;
+        private final long endPosition;
+        private final long endSequence;
+
+        private Batch(List<Order> orders, long endPosition, long endSequence) {
+            this.orders = orders;
+            this.endPosition = endPosition;
+            this.endSequence = endSequence;
+        }
+
+        public List<Order> getOrders() { return orders; }
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final Object forceLock = new Object();
+
+    private int writePosition;                // Guarded by this
+    private long nextSequence;                // Guarded by this
+    private int checkpointPosition;           // Guarded by this
+    private long checkpointSequence;          // Guarded by this
+    private volatile long durableSequence;    // Records below this are on disk; replay never reads past it
+
+    private OrderJournal(Path path, FileChannel channel, MappedByteBuffer buffer, int capacity) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    public static OrderJournal open(Path path, long capacityBytes) throws IOException {
+        if (capacityBytes < HEADER_SIZE + 2 * RECORD_OVERHEAD || capacityBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Order journal size must be between " + (HEADER_SIZE + 2 * RECORD_OVERHEAD) + " and "
+                    + Integer.MAX_VALUE + " bytes (one memory-mapped file), was " + capacityBytes);
+        }
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int capacity = (int) Math.max(channel.size(), capacityBytes); // Never map less than an existing journal holds
+        OrderJournal journal = new OrderJournal(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity), capacity);
+        journal.recover();
+        return journal;
+    }
+
+    private synchronized void recover() throws IOException {
+        if (buffer.getInt(0) == 0) {
+            checkpointPosition = HEADER_SIZE;
+            checkpointSequence = 0;
+            writeHeader();
+        } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) < 1 || buffer.getInt(4) > FORMAT_VERSION) {
+            throw new IOException(path + " is not an order journal (or was written by an incompatible version)");
+        } else {
+            checkpointPosition = (int) buffer.getLong(8);
+            checkpointSequence = buffer.getLong(16);
+        }
+        int position = checkpointPosition;
+        long sequence = checkpointSequence;
+        int length;
+        while ((length = validRecordLength(position = unwrap(position, sequence), sequence)) >= 0) {
+            position += RECORD_OVERHEAD + length;
+            sequence++;
+        }
+        writePosition = position;
+        writeHeader(); // Now in this version's format
+        nextSequence = sequence;
+        durableSequence = sequence; // Whatever survived the restart is on disk
+        if (sequence > checkpointSequence) {
+            System.out.println("Order journal " + path + ": " + (sequence - checkpointSequence) + " order(s) still to be written to the database.");
+        }
+    }
+
+    // Payload length of the record at position if it is intact and carries the expected sequence, else -1
+    private int validRecordLength(int position, long expectedSequence) {
+        if (position + RECORD_OVERHEAD > capacity) {
+            return -1;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + RECORD_OVERHEAD + length > capacity || buffer.getLong(position + 8) != expectedSequence) {
+            return -1;
+        }
+        return crcOf(position + 8, 8 + length) == buffer.getInt(position + 4) ? length : -1;
+    }
+
+    // Where the record with this sequence is, given that it follows position: there, or at the front behind a wrap marker
+    private int unwrap(int position, long sequence) {
+        if (position + RECORD_OVERHEAD > capacity) { // Only a version 1 file ends this close to the end, with no marker
+            return HEADER_SIZE;
+        }
+        if (buffer.getInt(position) == WRAP_MARKER && buffer.getLong(position + 8) == sequence && crcOf(position + 8, 8) == buffer.getInt(position + 4)) {
+            return HEADER_SIZE;
+        }
+        return position;
+    }
+
+    // Returns once the order is on disk. Appends that arrive while a force is running share the next one.
+    public void append(Order order) throws IOException {
+        byte[] payload = encode(order);
+        long mySequence;
+        synchronized (this) {
+            int size = RECORD_OVERHEAD + payload.length;
+            boolean wrap = writePosition + size > capacity - RECORD_OVERHEAD; // Every record leaves room behind it for a wrap marker
+            int position = wrap ? HEADER_SIZE : writePosition;
+            if (!hasRoom(position + size, wrap)) {
+                throw new IOException("Order journal " + path + " is full (" + capacity + " bytes); the database is too far behind.");
+            }
+            if (wrap && writePosition + RECORD_OVERHEAD <= capacity) {
+                buffer.putInt(writePosition, WRAP_MARKER);
+                buffer.putLong(writePosition + 8, nextSequence);
+                buffer.putInt(writePosition + 4, crcOf(writePosition + 8, 8));
+            }
+            buffer.putInt(position, payload.length);
+            buffer.putLong(position + 8, nextSequence);
+            view(position + RECORD_OVERHEAD, payload.length).put(payload);
+            buffer.putInt(position + 4, crcOf(position + 8, 8 + payload.length));
+            writePosition = position + size;
+            mySequence = nextSequence++;
+        }
+        synchronized (forceLock) {
+            if (durableSequence <= mySequence) {
+                long upTo;
+                synchronized (this) {
+                    upTo = nextSequence;
+                }
+                buffer.force();
+                durableSequence = upTo;
+            }
+        }
+    }
+
+    // Whether a record can end at end without writing over records not yet checkpointed
+    private boolean hasRoom(int end, boolean wrap) {
+        if (nextSequence == checkpointSequence) {
+            return end <= capacity - RECORD_OVERHEAD;
+        }
+        if (writePosition > checkpointPosition) { // The pending records run from the checkpoint to here: free space is behind them and at the front
+            return !wrap || end < checkpointPosition;
+        }
+        return !wrap && end < checkpointPosition; // They run on from the front to here: free space ends at the checkpoint
+    }
+
+    // Up to maxOrders durable orders after the checkpoint, oldest first
+    public synchronized Batch readPending(int maxOrders) throws IOException {
+        List<Order> orders = new ArrayList<>();
+        int position = checkpointPosition;
+        long sequence = checkpointSequence;
+        long durable = durableSequence;
+        while (sequence < durable && orders.size() < maxOrders) {
+            position = unwrap(position, sequence);
+            int length = validRecordLength(position, sequence);
+            if (length < 0) {
+                throw new IOException("Order journal " + path + " is corrupt at position " + position + " (sequence " + sequence + ")");
+            }
+            byte[] payload = new byte[length];
+            view(position + RECORD_OVERHEAD, length).get(payload);
+            orders.add(decode(payload));
+            position += RECORD_OVERHEAD + length;
+            sequence++;
+        }
+        return new Batch(orders, position, sequence);
+    }
+
+    // The batch's orders are in the database (or were rejected): never replay them again, and reuse their space
+    public synchronized void checkpoint(Batch batch) throws IOException {
+        checkpointPosition = (int) batch.endPosition;
+        checkpointSequence = batch.endSequence;
+        writeHeader();
+    }
+
+    private void writeHeader() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, FORMAT_VERSION);
+        buffer.putLong(8, checkpointPosition);
+        buffer.putLong(16, checkpointSequence);
+        buffer.force();
+    }
+
+    public synchronized long getPendingOrders() { return nextSequence - checkpointSequence; }
+    public synchronized long getPendingBytes() {
+        if (nextSequence == checkpointSequence) {
+            return 0;
+        }
+        return writePosition > checkpointPosition ? writePosition - checkpointPosition : capacity - checkpointPosition + writePosition - HEADER_SIZE;
+    }
+    public long getUsedBytes() { return HEADER_SIZE + getPendingBytes(); }
+    public long getCapacityBytes() { return capacity; }
+    public Path getPath() { return path; }
+
+    private int crcOf(int position, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(view(position, length));
+        return (int) crc.getValue();
+    }
+
+    // The shared buffer's position must not move under concurrent readers and writers, so bulk copies go through a view
+    private ByteBuffer view(int position, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(position).limit(position + length);
+        return view;
+    }
+
+    private static byte[] encode(Order order) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(order.getOrderId());
+            out.writeUTF(order.getCustomerId());
+            out.writeUTF(order.getBranchId());
+            out.writeUTF(order.getOrderTimestamp().toString());
+            out.writeDouble(order.getTotalAmount());
+            out.writeBoolean(order.getIdempotencyKey() != null);
+            if (order.getIdempotencyKey() != null) {
+                out.writeUTF(order.getIdempotencyKey());
+            }
+            out.writeInt(order.getItems().size());
+            for (OrderItem item : order.getItems()) {
+                out.writeUTF(item.getDrinkId());
+                out.writeUTF(item.getDrinkName() != null ? item.getDrinkName() : "");
+                out.writeInt(item.getQuantity());
+                out.writeDouble(item.getPriceAtTimeOfOrder());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Order decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            String orderId = in.readUTF();
+            String customerId = in.readUTF();
+            String branchId = in.readUTF();
+            LocalDateTime timestamp = LocalDateTime.parse(in.readUTF());
+            double total = in.readDouble();
+            String idempotencyKey = in.readBoolean() ? in.readUTF() : null;
+            int itemCount = in.readInt();
+            List<OrderItem> items = new ArrayList<>(itemCount);
+            for (int i = 0; i < itemCount; i++) {
+                OrderItem item = new OrderItem(in.readUTF(), in.readUTF(), in.readInt(), in.readDouble());
+                item.setOrderIdFk(orderId);
+                items.add(item);
+            }
+            Order order = new Order(orderId, customerId, branchId, timestamp, items, total);
+            order.setIdempotencyKey(idempotencyKey);
+            return order;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (forceLock) {
+            buffer.force();
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,145 @@
+package Model.UtilitiesandServerEntryPoint;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// LRU cache of prepared statements for one physical connection, keyed by SQL text.
+// A pooled connection is only ever used by one borrower at a time, so the map itself needs no locking.
+class PreparedStatementCache {
+
+    // Shared by every cache of a pool so operators see one set of numbers
+    static final class Counters {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+    }
+
+    private final Connection physical;
+    private final Counters counters;
+    private final LinkedHashMap<String, Entry> entries;
+
+    PreparedStatementCache(Connection physical, int maxSize, Counters counters) {
+        this.physical = physical;
+        this.counters = counters;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= maxSize) {
+                    return false;
+                }
+                counters.evictions.increment();
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    PreparedStatement prepare(String sql) throws SQLException {
+        Entry entry = entries.get(sql);
+        if (entry != null && !entry.inUse && !entry.statement.isClosed()) {
+            counters.hits.increment();
+        } else if (entry != null && entry.inUse) {
+            // Same SQL still open on this connection (nested use); hand out a one-off statement
+            counters.misses.increment();
+            return physical.prepareStatement(sql);
+        } else {
+            counters.misses.increment();
+            entry = new Entry(physical.prepareStatement(sql));
+            entries.put(sql, entry);
+        }
+        entry.inUse = true;
+        return entry.handle();
+    }
+
+    void closeAll() {
+        for (Entry entry : entries.values()) {
+            entry.evict();
+        }
+        entries.clear();
+    }
+
+    private static final class Entry {
+        final PreparedStatement statement;
+        boolean inUse;
+        boolean evicted;
+
+        Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        PreparedStatement handle() {
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, new Handle(this));
+        }
+
+        // Called when the DAO closes its statement: keep it prepared, just forget the parameters
+        void checkIn() {
+            inUse = false;
+            try {
+                if (evicted) {
+                    statement.close();
+                } else {
+                    statement.clearParameters();
+                    statement.clearBatch();
+                }
+            } catch (SQLException e) {
+                evicted = true;
+                try { statement.close(); } catch (SQLException ex) { /* ignore */ }
+            }
+        }
+
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                try { statement.close(); } catch (SQLException e) { /* ignore */ }
+            }
+        }
+    }
+
+    private static final class Handle implements InvocationHandler {
+        private final Entry entry;
+        private boolean closed;
+
+        Handle(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        entry.checkIn();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached[" + entry.statement + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+            try {
+                return method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package Model.UtilitiesandServerEntryPoint;
+
+import javax.management.ObjectName;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.concurrent.atomic.LongAdder;
+
+// Per-SQL execution statistics fed by BaseDAO. The first execution of a statement registers its MBean;
+// after that a record is one map lookup on the SQL text as executed plus a few atomic adds.
+// Statements built with a variable-length IN list share one entry ("IN (?)"), and at most db.metrics.maxStatements
+// entries are registered; anything past that is counted under a single "(other statements)" entry, so the MBean server stays bounded.
+// Which entry a text belongs to is worked out once and remembered, for up to db.metrics.maxSqlTexts distinct texts; only texts
+// past that are normalized again on every execution.
+public class QueryMetrics {
+    private static final int MAX_STATEMENTS = Integer.getInteger("db.metrics.maxStatements", 200);
+    private static final int MAX_SQL_TEXTS = Integer.getInteger("db.metrics.maxSqlTexts", 2000);
+    private static final String OTHER = "(other statements)";
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final ConcurrentHashMap<String, SqlStats> STATS = new ConcurrentHashMap<>(); // Normalized SQL -> entry
+    private static final ConcurrentHashMap<String, SqlStats> BY_TEXT = new ConcurrentHashMap<>(); // SQL as executed -> its entry
+
+    public static void record(String sql, long elapsedNanos, long rows) {
+        SqlStats stats = BY_TEXT.get(sql);
+        if (stats == null) {
+            stats = statsFor(IN_LIST.matcher(sql).replaceAll("IN (?)"));
+            if (BY_TEXT.size() < MAX_SQL_TEXTS) {
+                BY_TEXT.putIfAbsent(sql, stats);
+            }
+        }
+        if (rows < 0) {
+            stats.failures.increment();
+        } else {
+            stats.rows.add(rows);
+        }
+        stats.latency.record(elapsedNanos);
+    }
+
+    private static SqlStats statsFor(String sql) {
+        SqlStats stats = STATS.get(sql);
+        if (stats != null) {
+            return stats;
+        }
+        if (STATS.size() >= MAX_STATEMENTS) {
+            return STATS.computeIfAbsent(OTHER, QueryMetrics::register);
+        }
+        return STATS.computeIfAbsent(sql, QueryMetrics::register);
+    }
+
+    private static SqlStats register(String sql) {
+        SqlStats stats = new SqlStats(sql);
+        MetricsRegistry.register("type=SqlStats,sql=" + ObjectName.quote(sql), stats);
+        return stats;
+    }
+
+    public static class SqlStats implements SqlStatsMXBean {
+        private final String sql;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        SqlStats(String sql) {
+            this.sql = sql;
+        }
+
+        @Override public String getSql() { return sql; }
+        @Override public long getExecutionCount() { return latency.getCount(); }
+        @Override public long getFailedExecutions() { return failures.sum(); }
+        @Override public long getTotalRows() { return rows.sum(); }
+        @Override public double getMeanMicros() { return latency.getMeanMicros(); }
+        @Override public long getP50Micros() { return latency.getPercentileMicros(50); }
+        @Override public long getP95Micros() { return latency.getPercentileMicros(95); }
+        @Override public long getP99Micros() { return latency.getPercentileMicros(99); }
+        @Override public long getMaxMicros() { return latency.getMaxMicros(); }
+        @Override public long[] getLatencyBuckets() { return latency.getBucketCounts(); }
+    }
+}
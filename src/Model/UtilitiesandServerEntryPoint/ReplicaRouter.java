@@ -0,0 +1,108 @@
+package Model.UtilitiesandServerEntryPoint;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Hands out read-only work to a replica pool while a background check says the replica is reachable and not lagging.
+// Returning null tells DatabaseManager to fall back to the primary.
+public class ReplicaRouter {
+    private final ConnectionPool replicaPool;
+    private final long maxLagSeconds;
+    private final long borrowTimeoutMillis = Long.getLong("db.replica.borrowTimeoutMs", 0L);
+    private final long checkIntervalMillis;
+    private final ScheduledExecutorService monitor;
+    private volatile boolean healthy = true; // Optimistic until the first check says otherwise
+    private volatile long lastLagSeconds;
+
+    public ReplicaRouter(ConnectionPool replicaPool, long maxLagSeconds, long checkIntervalMillis) {
+        this.replicaPool = replicaPool;
+        this.maxLagSeconds = maxLagSeconds;
+        this.checkIntervalMillis = checkIntervalMillis;
+        this.monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-replica-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+        monitor.scheduleWithFixedDelay(this::checkHealth, 0, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // A replica with no free connection is busy, not broken: the read goes to the primary straight away and health is left alone.
+    // Only failing to open or validate a connection takes the replica out of service.
+    public Connection borrowOrNull() {
+        if (!healthy) {
+            return null;
+        }
+        try {
+            return replicaPool.tryBorrow(borrowTimeoutMillis);
+        } catch (SQLException e) {
+            markUnhealthy("borrow failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void checkHealth() {
+        Connection conn;
+        try {
+            conn = replicaPool.tryBorrow(checkIntervalMillis);
+        } catch (SQLException e) {
+            markUnhealthy("health check failed: " + e.getMessage());
+            return;
+        }
+        if (conn == null) {
+            return; // Every connection is busy serving reads: nothing to learn this round
+        }
+        try (conn) {
+            long lag = readLagSeconds(conn);
+            lastLagSeconds = lag;
+            if (lag > maxLagSeconds) {
+                markUnhealthy("replication lag " + (lag == Long.MAX_VALUE ? "unknown (replication stopped)" : lag + "s"));
+            } else if (!healthy) {
+                healthy = true;
+                System.out.println("Read replica is back (lag " + lag + "s); routing reads to it again.");
+            }
+        } catch (SQLException | RuntimeException e) {
+            markUnhealthy("health check failed: " + e.getMessage());
+        }
+    }
+
+    private void markUnhealthy(String reason) {
+        if (healthy) {
+            healthy = false;
+            System.err.println("Warn: read replica unavailable (" + reason + "); reads fall back to the primary.");
+        }
+    }
+
+    // MySQL replicas report their lag; a standalone instance (or H2) has no replication status and counts as caught up
+    static long readLagSeconds(Connection conn) {
+        for (String sql : new String[]{"SHOW REPLICA STATUS", "SHOW SLAVE STATUS"}) {
+            try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+                if (!rs.next()) {
+                    return 0;
+                }
+                long lag;
+                try {
+                    lag = rs.getLong("Seconds_Behind_Source");
+                } catch (SQLException e) {
+                    lag = rs.getLong("Seconds_Behind_Master");
+                }
+                return rs.wasNull() ? Long.MAX_VALUE : lag;
+            } catch (SQLException e) {
+                /* Older syntax next, or no replication status at all */
+            }
+        }
+        return 0;
+    }
+
+    public boolean isHealthy() { return healthy; }
+    public long getLastLagSeconds() { return lastLagSeconds; }
+
+    public void close() {
+        monitor.shutdownNow();
+        replicaPool.close();
+    }
+}
@@ -0,0 +1,214 @@
+package Model.UtilitiesandServerEntryPoint;
+
+import Model.DataAccessObjectImplementations.OrderDAOImplementation;
+import Model.DataAccessObjectImplementations.StockItemDAOImplementation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Brings the schema up to date at server startup. Scripts live in OtherFiles/migrations as V<n>__<description>.sql,
+// are applied in order exactly once, and are recorded in schema_version. Never edit a script that has shipped; add a new one.
+public class SchemaMigrator {
+    private static final String[] MIGRATIONS = {
+            "V1__baseline_schema.sql",
+            "V2__query_indexes.sql",
+            "V3__order_idempotency_key.sql",
+    };
+    private static final String RESOURCE_DIR = "/OtherFiles/migrations/";
+    private static final String LOCK_NAME = "drink_enterprise_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+    private static final Pattern CREATE_INDEX = Pattern.compile("(?i)CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+`?(\\w+)`?\\s+ON\\s+`?(\\w+)`?");
+
+    private final String scriptDir = System.getProperty("db.migrations.dir", "src/OtherFiles/migrations");
+    private final boolean verifyIndexes = Boolean.parseBoolean(System.getProperty("db.migrations.verifyIndexes", "true"));
+
+    public void migrate() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            // Several servers may start against the same database; only one of them applies scripts at a time
+            if (!acquireLock(conn)) {
+                throw new SQLException("Timed out waiting for the schema migration lock " + LOCK_NAME);
+            }
+            try {
+                createVersionTable(conn);
+                int current = currentVersion(conn);
+                int applied = 0;
+                for (String script : MIGRATIONS) {
+                    int version = versionOf(script);
+                    if (version > current) {
+                        apply(conn, script, version);
+                        applied++;
+                    }
+                }
+                System.out.println("Schema is at version " + Math.max(current, versionOf(MIGRATIONS[MIGRATIONS.length - 1]))
+                        + (applied == 0 ? " (up to date)." : " (" + applied + " migration(s) applied)."));
+            } finally {
+                releaseLock(conn);
+            }
+            if (verifyIndexes) {
+                verifyIndexUsage(conn);
+            }
+        }
+    }
+
+    private void apply(Connection conn, String script, int version) throws SQLException {
+        System.out.println("Applying schema migration " + script + "...");
+        // MySQL commits implicitly around DDL, so a script that fails halfway stays half-applied and unrecorded; fix it by hand before restarting
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : splitStatements(readScript(script))) {
+                Matcher createIndex = CREATE_INDEX.matcher(sql);
+                if (createIndex.lookingAt() && indexExists(conn, createIndex.group(2), createIndex.group(1))) {
+                    // MySQL has no CREATE INDEX IF NOT EXISTS; an index someone already added by hand is adopted as-is, like V1's tables
+                    System.out.println("Index " + createIndex.group(1) + " on " + createIndex.group(2) + " already exists; skipping.");
+                    continue;
+                }
+                try {
+                    stmt.execute(sql);
+                } catch (SQLException e) {
+                    throw new SQLException("Migration " + script + " failed on: " + sql, e);
+                }
+            }
+        }
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO schema_version (version, script) VALUES (?, ?)")) {
+            stmt.setInt(1, version);
+            stmt.setString(2, script);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static boolean indexExists(Connection conn, String table, String index) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ? LIMIT 1")) {
+            stmt.setString(1, table);
+            stmt.setString(2, index);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    // The hot queries must use an index. Fails startup if the plan for any table they read is a full scan or uses no key.
+    private void verifyIndexUsage(Connection conn) throws SQLException {
+        Map<String, String> queries = new LinkedHashMap<>();
+        queries.put("orders by branch", OrderDAOImplementation.FIND_BY_BRANCH_SQL);
+        queries.put("orders by customer", OrderDAOImplementation.FIND_BY_CUSTOMER_SQL);
+        queries.put("order items by order", OrderDAOImplementation.FIND_ITEMS_BY_ORDER_SQL);
+        queries.put("orders with items by branch", OrderDAOImplementation.FIND_WITH_ITEMS_BY_BRANCH_SQL);
+        queries.put("orders with items by customer", OrderDAOImplementation.FIND_WITH_ITEMS_BY_CUSTOMER_SQL);
+        queries.put("low stock", StockItemDAOImplementation.FIND_LOW_STOCK_SQL);
+        queries.put("low stock by branch", StockItemDAOImplementation.FIND_LOW_STOCK_BY_BRANCH_SQL);
+        List<String> problems = new ArrayList<>();
+        for (Map.Entry<String, String> query : queries.entrySet()) {
+            try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + query.getValue())) {
+                for (int i = 1; i <= stmt.getParameterMetaData().getParameterCount(); i++) {
+                    stmt.setString(i, "x");
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        String table = rs.getString("table");
+                        if (table == null) {
+                            continue; // No table access at all, e.g. "Impossible WHERE"
+                        }
+                        String possibleKeys = rs.getString("possible_keys");
+                        if ("ALL".equalsIgnoreCase(rs.getString("type")) || rs.getString("key") == null) {
+                            problems.add(query.getKey() + " scans table " + table + (possibleKeys == null ? " with no usable index" : " instead of using " + possibleKeys));
+                        }
+                    }
+                }
+            }
+        }
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("Index verification failed: " + String.join("; ", problems)
+                    + ". Check the migrations in " + scriptDir + " (or set -Ddb.migrations.verifyIndexes=false).");
+        }
+        System.out.println("Index verification passed for " + queries.size() + " hot queries.");
+    }
+
+    private static void createVersionTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INT PRIMARY KEY, " +
+                    "script VARCHAR(255) NOT NULL, " +
+                    "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        }
+    }
+
+    private static int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static boolean acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private static void releaseLock(Connection conn) {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.executeQuery().close();
+        } catch (SQLException e) {
+            System.err.println("Warn: could not release " + LOCK_NAME + ": " + e.getMessage()); // Released anyway when the session ends
+        }
+    }
+
+    static int versionOf(String script) {
+        return Integer.parseInt(script.substring(1, script.indexOf("__")));
+    }
+
+    // Scripts are shipped on the classpath next to the compiled classes; fall back to the source tree when run from the IDE without resources
+    private String readScript(String script) throws SQLException {
+        try (InputStream in = SchemaMigrator.class.getResourceAsStream(RESOURCE_DIR + script)) {
+            if (in != null) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            Path file = Paths.get(scriptDir, script);
+            return Files.readString(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Could not read migration script " + script + " (looked on the classpath under " + RESOURCE_DIR + " and in " + scriptDir + ")", e);
+        }
+    }
+
+    // Statements end with ';' at the end of a line; '--' comment lines are dropped
+    static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : script.split("\\R")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            current.append(line).append('\n');
+            if (trimmed.endsWith(";")) {
+                String sql = current.toString().trim();
+                statements.add(sql.substring(0, sql.length() - 1));
+                current.setLength(0);
+            }
+        }
+        if (current.toString().trim().length() > 0) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,14 @@
+package Model.UtilitiesandServerEntryPoint;
+
+public interface SqlStatsMXBean {
+    String getSql();
+    long getExecutionCount();
+    long getFailedExecutions();
+    long getTotalRows();
+    double getMeanMicros();
+    long getP50Micros();
+    long getP95Micros();
+    long getP99Micros();
+    long getMaxMicros();
+    long[] getLatencyBuckets(); // Bucket i counts executions that took less than 2^i microseconds
+}
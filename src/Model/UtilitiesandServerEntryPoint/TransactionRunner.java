@@ -0,0 +1,184 @@
+package Model.UtilitiesandServerEntryPoint;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Runs a unit of work in one transaction on a pooled connection, instead of every service hand-rolling
+// setAutoCommit/commit/rollback. Deadlocks and lock wait timeouts are retried from the start with jittered
+// exponential backoff until db.tx.retryDeadlineMs; anything else is rolled back and rethrown as is.
+// The work may therefore run more than once and must not have side effects outside the connection, except through afterCompletion.
+public class TransactionRunner {
+
+    @FunctionalInterface
+    public interface TransactionWork<T> {
+        T run(Connection conn) throws Exception;
+    }
+
+    // Told, after the attempt it was registered in, whether that attempt committed
+    @FunctionalInterface
+    public interface CompletionHook {
+        void completed(boolean committed);
+    }
+
+    private static final int ER_LOCK_DEADLOCK = 1213;
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+    private static final String SQLSTATE_SERIALIZATION_FAILURE = "40001";
+
+    private static final long RETRY_DEADLINE_MS = Long.getLong("db.tx.retryDeadlineMs", 10_000L);
+    private static final long INITIAL_BACKOFF_MS = Long.getLong("db.tx.initialBackoffMs", 10L);
+    private static final long MAX_BACKOFF_MS = Long.getLong("db.tx.maxBackoffMs", 500L);
+
+    private static final ConcurrentHashMap<String, TransactionStats> STATS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<List<CompletionHook>> HOOKS = new ThreadLocal<>(); // Of the attempt running on this thread
+
+    // name identifies the transaction in logs and in the DrinkEnterprise:type=Transactions,name=<name> MBean
+    public static <T> T run(String name, TransactionWork<T> work) throws Exception {
+        TransactionStats stats = STATS.computeIfAbsent(name, TransactionRunner::register);
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(RETRY_DEADLINE_MS);
+        try {
+            for (int attempt = 1; ; attempt++) {
+                Connection conn = DatabaseManager.getConnection();
+                List<CompletionHook> outerHooks = HOOKS.get();
+                List<CompletionHook> hooks = new ArrayList<>();
+                HOOKS.set(hooks);
+                try {
+                    conn.setAutoCommit(false);
+                    T result = work.run(conn);
+                    conn.commit();
+                    stats.commits.increment();
+                    runHooks(name, hooks, true);
+                    return result;
+                } catch (Exception e) {
+                    rollbackQuietly(conn);
+                    runHooks(name, hooks, false);
+                    SQLException retryable = retryableCause(e);
+                    if (retryable == null) {
+                        stats.failures.increment();
+                        throw e;
+                    }
+                    if (retryable.getErrorCode() == ER_LOCK_WAIT_TIMEOUT) {
+                        stats.lockWaitTimeouts.increment();
+                    } else {
+                        stats.deadlocks.increment();
+                    }
+                    long backoff = backoffMillis(attempt);
+                    if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff) > deadline) {
+                        stats.retriesExhausted.increment();
+                        stats.failures.increment();
+                        System.err.println("Transaction " + name + " gave up after " + attempt + " attempts: " + retryable.getMessage());
+                        throw e;
+                    }
+                    stats.retries.increment();
+                    System.err.println("Warn: transaction " + name + " attempt " + attempt + " failed (" + retryable.getMessage() + "); retrying in " + backoff + "ms");
+                    try {
+                        Thread.sleep(backoff);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        stats.failures.increment();
+                        throw e;
+                    }
+                } finally {
+                    HOOKS.set(outerHooks);
+                    try {
+                        conn.setAutoCommit(true);
+                        conn.close();
+                    } catch (SQLException ex) { /* ignored */ }
+                }
+            }
+        } finally {
+            stats.latency.record(System.nanoTime() - started);
+        }
+    }
+
+    // For state kept outside the database that must follow the transaction (an in-memory copy, a notification):
+    // the hook runs once the current attempt has committed or rolled back. Only valid inside run(), on its thread.
+    public static void afterCompletion(CompletionHook hook) {
+        List<CompletionHook> hooks = HOOKS.get();
+        if (hooks == null) {
+            throw new IllegalStateException("afterCompletion must be called from inside TransactionRunner.run");
+        }
+        hooks.add(hook);
+    }
+
+    public static boolean inTransaction() {
+        return HOOKS.get() != null;
+    }
+
+    private static void runHooks(String name, List<CompletionHook> hooks, boolean committed) {
+        for (CompletionHook hook : hooks) {
+            try {
+                hook.completed(committed);
+            } catch (RuntimeException e) {
+                System.err.println("Warn: completion hook of transaction " + name + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    // The SQLException in the cause chain that means "the transaction lost a lock race; running it again can succeed"
+    static SQLException retryableCause(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException) {
+                for (SQLException s = (SQLException) t; s != null; s = s.getNextException()) {
+                    if (s.getErrorCode() == ER_LOCK_DEADLOCK || s.getErrorCode() == ER_LOCK_WAIT_TIMEOUT
+                            || SQLSTATE_SERIALIZATION_FAILURE.equals(s.getSQLState())) {
+                        return s;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    // Full jitter: uniform in [1, min(max, initial * 2^(attempt-1))] so colliding transactions spread out instead of colliding again
+    private static long backoffMillis(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(attempt - 1, 20));
+        return 1 + ThreadLocalRandom.current().nextLong(Math.max(1, ceiling));
+    }
+
+    private static void rollbackQuietly(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException ex) {
+            System.err.println("Transaction rollback failed: " + ex.getMessage());
+        }
+    }
+
+    private static TransactionStats register(String name) {
+        TransactionStats stats = new TransactionStats(name);
+        MetricsRegistry.register("type=Transactions,name=" + name, stats);
+        return stats;
+    }
+
+    public static class TransactionStats implements TransactionStatsMXBean {
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder commits = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder deadlocks = new LongAdder();
+        private final LongAdder lockWaitTimeouts = new LongAdder();
+        private final LongAdder retriesExhausted = new LongAdder();
+
+        TransactionStats(String name) {
+            this.name = name;
+        }
+
+        @Override public String getName() { return name; }
+        @Override public long getCommits() { return commits.sum(); }
+        @Override public long getFailures() { return failures.sum(); }
+        @Override public long getRetries() { return retries.sum(); }
+        @Override public long getDeadlocks() { return deadlocks.sum(); }
+        @Override public long getLockWaitTimeouts() { return lockWaitTimeouts.sum(); }
+        @Override public long getRetriesExhausted() { return retriesExhausted.sum(); }
+        @Override public double getMeanMicros() { return latency.getMeanMicros(); }
+        @Override public long getP99Micros() { return latency.getPercentileMicros(99); }
+        @Override public long getMaxMicros() { return latency.getMaxMicros(); }
+    }
+}
@@ -0,0 +1,14 @@
+package Model.UtilitiesandServerEntryPoint;
+
+public interface TransactionStatsMXBean {
+    String getName();
+    long getCommits();
+    long getFailures();          // Rolled back and rethrown: business errors, other SQL errors, or retries past the deadline
+    long getRetries();           // Attempts repeated after a deadlock or lock wait timeout
+    long getDeadlocks();         // MySQL 1213 / SQLState 40001
+    long getLockWaitTimeouts();  // MySQL 1205
+    long getRetriesExhausted();  // Still failing when the deadline came
+    double getMeanMicros();      // Whole run() including retries and backoff
+    long getP99Micros();
+    long getMaxMicros();
+}
@@ -1,3 +1,6 @@
+-- Creates the database itself. The tables and indexes are created and upgraded by the server at startup
+-- from OtherFiles/migrations (see SchemaMigrator); the CREATE TABLE statements below are kept for manual setups.
+
 CREATE DATABASE IF NOT EXISTS drink_enterprise_db;
 USE drink_enterprise_db;
 
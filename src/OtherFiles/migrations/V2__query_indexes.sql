@@ -0,0 +1,12 @@
+-- Indexes behind the DAO hot queries. InnoDB appends the primary key to every secondary index,
+-- so the orders indexes are effectively (branch_id, order_timestamp, order_id) and (customer_id, order_timestamp, order_id).
+
+-- OrderDAOImplementation.findByBranchId / findByCustomerId
+CREATE INDEX idx_orders_branch_ts ON orders (branch_id, order_timestamp);
+CREATE INDEX idx_orders_customer_ts ON orders (customer_id, order_timestamp);
+
+-- OrderDAOImplementation.findItemsByOrderId, covering every column it reads
+CREATE INDEX idx_order_items_order ON order_items (order_id, drink_id, quantity, price_at_time_of_order, item_total);
+
+-- StockItemDAOImplementation.findAllLowStock: range on minimum_threshold > 0, quantity compared inside the index
+CREATE INDEX idx_stock_low ON stock_items (minimum_threshold, quantity);
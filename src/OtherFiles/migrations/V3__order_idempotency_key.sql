@@ -0,0 +1,4 @@
+-- Client-supplied idempotency key for placeOrder retries. NULL for orders placed without one; MySQL allows any number of NULLs in a unique index.
+ALTER TABLE orders ADD COLUMN idempotency_key VARCHAR(100) NULL;
+
+CREATE UNIQUE INDEX uq_orders_idempotency_key ON orders (idempotency_key);
@@ -6,10 +6,12 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -18,7 +20,10 @@ import java.util.stream.Collectors;
 import Controller.ClientEntryPoint.ClientConstants;
 import Model.DataEntities.Branch;
 import Model.DataEntities.Drink;
+import Model.DataEntities.LowStockEntry;
+import Model.DataEntities.LowStockEvent;
 import Model.DataEntities.Order;
+import Model.DataEntities.StockReservation;
 import Model.DataEntities.User;
 import Model.ServiceInterfaces.*;
 
@@ -432,6 +437,8 @@ public class AppPanel extends JPanel {
         // --- Logic for Place Order ---
         Map<String, Integer> currentOrderItemsMap = new HashMap<>();
         Map<String, Drink> currentOrderDrinkObjects = new HashMap<>();
+        String[] currentOrderKey = {null}; // Idempotency key, kept while the same cart is resubmitted so a retry after a timeout cannot order twice
+        StockReservation[] currentReservation = {null}; // Stock the server holds for this cart, so a short item shows up when it is added
 
         Runnable refreshAction = () -> {
             branchComboBox.removeAllItems();
@@ -477,11 +484,42 @@ public class AppPanel extends JPanel {
                 return;
             }
 
+            Branch selectedBranch = (Branch) branchComboBox.getSelectedItem();
+            if (selectedBranch == null) {
+                JOptionPane.showMessageDialog(panel, "Please select a branch first.", "Input Error", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
             if (selectedDrink != null && quantity > 0) {
-                currentOrderItemsMap.put(selectedDrink.getId(), currentOrderItemsMap.getOrDefault(selectedDrink.getId(), 0) + quantity);
-                currentOrderDrinkObjects.putIfAbsent(selectedDrink.getId(), selectedDrink);
-                updateOrderCartTable(orderCartModel, currentOrderItemsMap, currentOrderDrinkObjects, orderTotalLabel);
-                quantityField.setText("1");
+                int newQuantity = currentOrderItemsMap.getOrDefault(selectedDrink.getId(), 0) + quantity;
+                Map<String, Integer> newCart = new HashMap<>(currentOrderItemsMap);
+                newCart.put(selectedDrink.getId(), newQuantity);
+                StockReservation held = currentReservation[0];
+                addToOrderButton.setEnabled(false);
+                new SwingWorker<StockReservation, Void>() {
+                    @Override protected StockReservation doInBackground() throws Exception {
+                        return holdCartStock(held, selectedBranch.getId(), Map.of(selectedDrink.getId(), newQuantity), newCart);
+                    }
+
+                    @Override
+                    protected void done() {
+                        try {
+                            currentReservation[0] = get();
+                            currentOrderItemsMap.put(selectedDrink.getId(), newQuantity);
+                            currentOrderDrinkObjects.putIfAbsent(selectedDrink.getId(), selectedDrink);
+                            currentOrderKey[0] = null;
+                            updateOrderCartTable(orderCartModel, currentOrderItemsMap, currentOrderDrinkObjects, orderTotalLabel);
+                            quantityField.setText("1");
+                            placeOrderStatusLabel.setText(" ");
+                        } catch (Exception ex) {
+                            String message = ex.getCause() != null ? ex.getCause().getMessage() : ex.getMessage();
+                            placeOrderStatusLabel.setText(message);
+                            placeOrderStatusLabel.setForeground(Color.RED);
+                            JOptionPane.showMessageDialog(panel, "Could not add " + selectedDrink.getName() + ": " + message, "Stock Error", JOptionPane.WARNING_MESSAGE);
+                        } finally {
+                            addToOrderButton.setEnabled(true);
+                        }
+                    }
+                }.execute();
             } else {
                 JOptionPane.showMessageDialog(panel, "Please select a drink and specify a valid quantity.", "Input Error", JOptionPane.WARNING_MESSAGE);
             }
@@ -499,9 +537,30 @@ public class AppPanel extends JPanel {
                     }
                 }
                 if(drinkIdToRemove != null){
-                    currentOrderItemsMap.remove(drinkIdToRemove);
-                    currentOrderDrinkObjects.remove(drinkIdToRemove);
+                    String drinkId = drinkIdToRemove;
+                    currentOrderItemsMap.remove(drinkId);
+                    currentOrderDrinkObjects.remove(drinkId);
+                    currentOrderKey[0] = null;
                     updateOrderCartTable(orderCartModel, currentOrderItemsMap, currentOrderDrinkObjects, orderTotalLabel);
+                    // Give the held stock back; if that fails the hold simply expires
+                    StockReservation held = currentReservation[0];
+                    Map<String, Integer> newCart = new HashMap<>(currentOrderItemsMap);
+                    if (held != null) {
+                        new SwingWorker<StockReservation, Void>() {
+                            @Override protected StockReservation doInBackground() throws Exception {
+                                return holdCartStock(held, held.getBranchId(), Map.of(drinkId, 0), newCart);
+                            }
+
+                            @Override
+                            protected void done() {
+                                try {
+                                    currentReservation[0] = get();
+                                } catch (Exception ex) {
+                                    currentReservation[0] = null;
+                                }
+                            }
+                        }.execute();
+                    }
                 }
             } else {
                 JOptionPane.showMessageDialog(panel, "Please select an item from the order to remove.", "Selection Error", JOptionPane.WARNING_MESSAGE);
@@ -520,10 +579,22 @@ public class AppPanel extends JPanel {
             placeOrderStatusLabel.setText("Submitting order...");
             placeOrderStatusLabel.setForeground(Color.BLUE);
             submitOrderButton.setEnabled(false);
+            if (currentOrderKey[0] == null) {
+                currentOrderKey[0] = UUID.randomUUID().toString();
+            }
+            String orderKey = currentOrderKey[0];
+            StockReservation held = currentReservation[0];
+            Map<String, Integer> cart = new HashMap<>(currentOrderItemsMap);
 
             new SwingWorker<Order, Void>() {
                 @Override protected Order doInBackground() throws Exception {
-                    return orderService.placeOrder(customerId, selectedBranch.getId(), currentOrderItemsMap);
+                    StockReservation reservation = held;
+                    if (reservation == null || !reservation.getBranchId().equals(selectedBranch.getId())) {
+                        // The hold expired earlier, or the branch was changed: hold the whole cart again first
+                        reservation = holdCartStock(held, selectedBranch.getId(), cart, cart);
+                        currentReservation[0] = reservation;
+                    }
+                    return orderService.placeReservedOrder(customerId, reservation.getReservationId(), orderKey);
                 }
 
                 @Override
@@ -535,6 +606,8 @@ public class AppPanel extends JPanel {
                         JOptionPane.showMessageDialog(panel, "Order Submitted!\nID: " + placedOrder.getOrderId() + "\nTotal: " + String.format("%.2f", placedOrder.getTotalAmount()), "Order Confirmation", JOptionPane.INFORMATION_MESSAGE);
                         currentOrderItemsMap.clear();
                         currentOrderDrinkObjects.clear();
+                        currentOrderKey[0] = null;
+                        currentReservation[0] = null;
                         updateOrderCartTable(orderCartModel, currentOrderItemsMap, currentOrderDrinkObjects, orderTotalLabel);
                         customerIdField.setText("CUST-" + System.currentTimeMillis() % 10000);
                     }
@@ -542,7 +615,11 @@ public class AppPanel extends JPanel {
                     String errorMessage = "Items not in stock: ";
                     Throwable cause = ex.getCause();
 
-                    if (cause != null) {
+                    if (cause != null && String.valueOf(cause.getMessage()).contains("has expired or does not exist")) {
+                        // Submitting again re-checks the cart against the stock and holds it afresh
+                        currentReservation[0] = null;
+                        errorMessage = "The stock held for this cart has expired. Submit again to re-check it.";
+                    } else if (cause != null) {
                         // Look for the pattern "Stock for [item] at [branch] not found"
                         Pattern pattern = Pattern.compile("Stock for .* at .* not found");
                         Matcher matcher = pattern.matcher(cause.getMessage());
@@ -569,6 +646,25 @@ public class AppPanel extends JPanel {
         return panel;
     }
 
+    // Holds changedLines under the cart's reservation. With no reservation yet, or one at another branch, the whole cart is held
+    // under a new one instead (the old one is released); an empty cart holds nothing.
+    private StockReservation holdCartStock(StockReservation current, String branchId, Map<String, Integer> changedLines, Map<String, Integer> wholeCart) throws Exception {
+        if (wholeCart.isEmpty()) {
+            if (current != null) stockService.releaseReservation(current.getReservationId());
+            return null;
+        }
+        if (current != null && current.getBranchId().equals(branchId)) {
+            try {
+                return stockService.reserveStock(current.getReservationId(), branchId, changedLines);
+            } catch (Exception e) {
+                if (!String.valueOf(e.getMessage()).contains("has expired or does not exist")) throw e;
+            }
+        } else if (current != null) {
+            stockService.releaseReservation(current.getReservationId());
+        }
+        return stockService.reserveStock(null, branchId, wholeCart);
+    }
+
     private void updateOrderCartTable(DefaultTableModel cartModel, Map<String, Integer> itemsMap, Map<String, Drink> drinkObjects, JLabel totalLabel) {
         cartModel.setRowCount(0);
         double currentTotal = 0;
@@ -1033,33 +1129,48 @@ public class AppPanel extends JPanel {
     private JPanel createLowStockAlertsPanel() {
         JPanel panel = new JPanel(new BorderLayout(10,10));
         panel.setBorder(BorderFactory.createTitledBorder("System-Wide Low Stock Alerts"));
-        JTextArea alertsArea = new JTextArea(15, 60);
-        alertsArea.setEditable(false);
-        alertsArea.setFont(new Font("Monospaced", Font.PLAIN, 14));
+        String[] alertColumns = {"Branch", "Branch ID", "Drink", "Drink ID", "Quantity", "Threshold", "Shortfall"};
+        DefaultTableModel alertsTableModel = new DefaultTableModel(alertColumns, 0) {
+            public boolean isCellEditable(int r, int c) { return false; }
+            public Class<?> getColumnClass(int c) { return c >= 4 ? Integer.class : String.class; } // Numbers sort as numbers
+        };
+        JTable alertsTable = new JTable(alertsTableModel);
+        alertsTable.setAutoCreateRowSorter(true); // Click a column header to sort
+        JComboBox<Object> alertBranchComboBox = new JComboBox<>();
+        alertBranchComboBox.addItem("All branches");
+        new SwingWorker<List<Branch>,Void>(){protected List<Branch>doInBackground()throws Exception{return branchService.getAllBranches();}protected void done(){try{get().forEach(alertBranchComboBox::addItem);}catch(Exception e){}}}.execute();
         JButton refreshAlertsButton = new JButton("Check for Low Stock");
-        panel.add(new JScrollPane(alertsArea), BorderLayout.CENTER);
-        panel.add(refreshAlertsButton, BorderLayout.SOUTH);
+        JLabel alertsStatusLabel = new JLabel(" ");
+        JLabel lastAlertLabel = new JLabel(" ");
+        JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        topPanel.add(new JLabel("Branch:"));
+        topPanel.add(alertBranchComboBox);
+        topPanel.add(refreshAlertsButton);
+        topPanel.add(alertsStatusLabel);
+        panel.add(topPanel, BorderLayout.NORTH);
+        panel.add(new JScrollPane(alertsTable), BorderLayout.CENTER);
+        panel.add(lastAlertLabel, BorderLayout.SOUTH);
         panel.putClientProperty("refreshButton", refreshAlertsButton); // For external refresh
 
         refreshAlertsButton.addActionListener(e -> {
-            alertsArea.setText("Checking for low stock alerts across all branches...");
+            Object selection = alertBranchComboBox.getSelectedItem();
+            String branchId = selection instanceof Branch ? ((Branch) selection).getId() : null;
+            alertsStatusLabel.setText("Checking for low stock...");
+            alertsStatusLabel.setForeground(Color.BLUE);
             refreshAlertsButton.setEnabled(false);
-            new SwingWorker<List<String>, Void>() {
-                @Override protected List<String> doInBackground() throws Exception { return stockService.checkLowStockLevelsGlobally(); }
+            new SwingWorker<List<LowStockEntry>, Void>() {
+                @Override protected List<LowStockEntry> doInBackground() throws Exception { return stockService.getLowStockEntries(branchId); }
                 @Override protected void done() {
                     try {
-                        List<String> alerts = get();
-                        StringBuilder sb = new StringBuilder();
-                        if (alerts.isEmpty() || (alerts.size() == 1 && alerts.get(0).startsWith("All stock levels"))) {
-                            sb.append(alerts.get(0));
-                        } else {
-                            sb.append("WARNING: The following items are below their minimum threshold:\n\n");
-                            alerts.forEach(alert -> sb.append(alert).append("\n"));
-                        }
-                        alertsArea.setText(sb.toString());
+                        List<LowStockEntry> entries = get();
+                        alertsTableModel.setRowCount(0);
+                        entries.forEach(en -> alertsTableModel.addRow(new Object[]{en.getBranchName(), en.getBranchId(), en.getDrinkName(), en.getDrinkId(), en.getQuantity(), en.getMinimumThreshold(), en.getShortfall()}));
+                        alertsStatusLabel.setText(entries.isEmpty() ? "All stock levels are currently above threshold or no thresholds are set." : entries.size() + " item(s) below their minimum threshold.");
+                        alertsStatusLabel.setForeground(entries.isEmpty() ? new Color(0,128,0) : Color.RED);
                     } catch (Exception ex) {
                         String err = "Error fetching alerts: " + (ex.getCause() != null ? ex.getCause().getMessage() : ex.getMessage());
-                        alertsArea.setText(err);
+                        alertsStatusLabel.setText(err);
+                        alertsStatusLabel.setForeground(Color.RED);
                         JOptionPane.showMessageDialog(panel, err, "Error", JOptionPane.ERROR_MESSAGE);
                     } finally {
                         refreshAlertsButton.setEnabled(true);
@@ -1067,6 +1178,28 @@ public class AppPanel extends JPanel {
                 }
             }.execute();
         });
+        alertBranchComboBox.addActionListener(e -> { if (refreshAlertsButton.isEnabled()) refreshAlertsButton.doClick(); });
+
+        // The server pushes threshold crossings, so the list refreshes itself instead of waiting for the button
+        IStockAlertListener alertListener = new IStockAlertListener() {
+            @Override public void onLowStockEvent(LowStockEvent event) {
+                SwingUtilities.invokeLater(() -> {
+                    lastAlertLabel.setText(event.toString());
+                    lastAlertLabel.setForeground(event.isLow() ? Color.RED : new Color(0,128,0));
+                    if (refreshAlertsButton.isEnabled()) refreshAlertsButton.doClick();
+                });
+            }
+        };
+        new SwingWorker<Void, Void>() {
+            @Override protected Void doInBackground() throws Exception {
+                stockService.addStockAlertListener((IStockAlertListener) UnicastRemoteObject.exportObject(alertListener, 0));
+                return null;
+            }
+            @Override protected void done() {
+                try { get(); }
+                catch (Exception ex) { lastAlertLabel.setText("Live alerts unavailable; use the button to check."); }
+            }
+        }.execute();
         SwingUtilities.invokeLater(refreshAlertsButton::doClick);
         return panel;
     }
@@ -3,11 +3,19 @@ package View.UIRunners;
 import Model.DataEntities.Branch;
 import Model.DataEntities.Drink;
 import Model.DataEntities.Order;
+import Model.DataEntities.OrderItem;
+import Model.DataEntities.OrderRequest;
+import Model.DataEntities.OrderResult;
 import Model.DataEntities.User;
 import Model.ServiceInterfaces.*;
 
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 
@@ -84,9 +92,9 @@ public class CLIRunner implements Runnable{
     }
 
     private void showMainMenu(Scanner scanner) {
-        System.out.println("\n--- CLI Menu (" + loggedInUser.getUsername() + ") ---\n1. Drinks\n2. Branches\n3. Stock Lvl\n4. Order\n5. Low Stock\n6. Branch Report\n7. Overall Report");
+        System.out.println("\n--- CLI Menu (" + loggedInUser.getUsername() + ") ---\n1. Drinks\n2. Branches\n3. Stock Lvl\n4. Order\n5. Low Stock\n6. Branch Report\n7. Overall Report\n8. Bulk Orders (file)");
         if (loggedInUser.getRole() == User.UserRole.ADMIN) {
-            System.out.println("A1. Add Drink\nA2. Add Branch\nA3. Set Stock\nA4. Set Threshold\nA5. Transfer\nA6. Add User");
+            System.out.println("A1. Add Drink\nA2. Add Branch\nA3. Set Stock\nA4. Set Threshold\nA5. Transfer\nA6. Add User\nA7. Export Orders (CSV)");
         }
         System.out.println("9. Logout\n0. Exit CLI");
         System.out.print("Opt: ");
@@ -120,6 +128,9 @@ public class CLIRunner implements Runnable{
                 case "7":
                     reportingService.generateOverallBusinessReport().forEach((metric, value) -> System.out.println(metric + ": " + value));
                     break;
+                case "8":
+                    bulkOrdersCLI(scanner);
+                    break;
                 case "A1":
                     if (isAdmin()) {
                         System.out.print("DrinkID,DrinkName,Brand,Price,HQStock (commas): ");
@@ -196,6 +207,11 @@ public class CLIRunner implements Runnable{
                         System.out.println("User added.");
                     }
                     break;
+                case "A7":
+                    if (isAdmin()) {
+                        exportOrdersCLI(scanner);
+                    }
+                    break;
                 case "9":
                     loggedInUser = null;
                     System.out.println("CLI Logged out.");
@@ -243,5 +259,81 @@ public class CLIRunner implements Runnable{
         }
     }
 
+    // One order per line: CustomerID,BranchID,DrinkID:Qty;DrinkID:Qty (blank lines and # comments skipped)
+    private void bulkOrdersCLI(Scanner scanner) {
+        try {
+            System.out.print("Orders file: ");
+            List<String> lines = Files.readAllLines(Paths.get(scanner.nextLine().strip()));
+            List<OrderRequest> requests = new ArrayList<>();
+            for (String line : lines) {
+                if (line.isBlank() || line.strip().startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.strip().split(",", 3);
+                if (parts.length < 3) {
+                    System.err.println("Skipping malformed line: " + line);
+                    continue;
+                }
+                Map<String, Integer> items = new HashMap<>();
+                for (String item : parts[2].split(";")) {
+                    String[] drinkAndQty = item.split(":");
+                    items.merge(drinkAndQty[0].strip(), Integer.parseInt(drinkAndQty[1].strip()), Integer::sum);
+                }
+                requests.add(new OrderRequest(parts[0].strip(), parts[1].strip(), items));
+            }
+            if (requests.isEmpty()) {
+                System.out.println("No orders.");
+                return;
+            }
+            List<OrderResult> results = orderService.placeOrders(requests);
+            int placed = 0;
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i).isSuccess()) {
+                    placed++;
+                }
+                System.out.println((i + 1) + ". " + results.get(i));
+            }
+            System.out.println(placed + " of " + results.size() + " orders placed.");
+        } catch (Exception exception) {
+            System.err.println("Bulk Order Error: " + exception.getMessage());
+        }
+    }
 
+    // One CSV line per order item; the server sends the orders a chunk at a time, so neither side holds the whole history
+    private void exportOrdersCLI(Scanner scanner) {
+        RemoteIterator<Order> orders = null;
+        try {
+            System.out.print("BranchID (blank for all): ");
+            String branchId = scanner.nextLine().strip();
+            System.out.print("Output file: ");
+            String file = scanner.nextLine().strip();
+            orders = orderService.exportOrders(branchId.isEmpty() ? null : branchId, null, null);
+            int count = 0;
+            try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(file))) {
+                writer.write("order_id,customer_id,branch_id,order_timestamp,drink_id,drink_name,quantity,price,item_total");
+                writer.newLine();
+                for (List<Order> chunk = orders.next(); !chunk.isEmpty(); chunk = orders.next()) {
+                    for (Order order : chunk) {
+                        for (OrderItem item : order.getItems()) {
+                            writer.write(String.join(",", order.getOrderId(), order.getCustomerId(), order.getBranchId(), String.valueOf(order.getOrderTimestamp()),
+                                    item.getDrinkId(), item.getDrinkName(), String.valueOf(item.getQuantity()),
+                                    String.format("%.2f", item.getPriceAtTimeOfOrder()), String.format("%.2f", item.getItemTotal())));
+                            writer.newLine();
+                        }
+                    }
+                    count += chunk.size();
+                }
+            }
+            orders = null; // Exhausted, so the server has already closed it
+            System.out.println(count + " orders exported to " + file);
+        } catch (Exception exception) {
+            System.err.println("Export Error: " + exception.getMessage());
+        } finally {
+            if (orders != null) {
+                try {
+                    orders.close();
+                } catch (RemoteException e) { /* the lease will reap it */ }
+            }
+        }
+    }
 }